@@ -0,0 +1,58 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suma concurrente de saldos. Igual que {@link LongAdder}, reparte las sumas entre varias celdas
+ * segun el hilo para que los hilos no compitan por la misma variable, y el total se obtiene
+ * sumando las celdas. Los importes en centimos van a un {@link LongAdder} aparte para no crear
+ * {@link BigDecimal} en {@link CuentaCentimos}.
+ */
+class AcumuladorSaldo {
+    private final AtomicReferenceArray<BigDecimal> celdas;
+    private final LongAdder centimos = new LongAdder();
+
+    AcumuladorSaldo() {
+        int tamanio = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        celdas = new AtomicReferenceArray<>(tamanio);
+        for (int i = 0; i < tamanio; i++) {
+            celdas.set(i, BigDecimal.ZERO);
+        }
+    }
+
+    void sumar(BigDecimal monto) {
+        int i = celda();
+        BigDecimal actual;
+        do {
+            actual = celdas.get(i);
+        } while (!celdas.compareAndSet(i, actual, actual.add(monto)));
+    }
+
+    void sumarCentimos(long monto) {
+        centimos.add(monto);
+    }
+
+    BigDecimal total() {
+        BigDecimal total = BigDecimal.valueOf(centimos.sum(), 2);
+        for (int i = 0; i < celdas.length(); i++) {
+            total = total.add(celdas.get(i));
+        }
+        return total;
+    }
+
+    // No es atomico respecto a sumas concurrentes, se usa al reemplazar todas las cuentas
+    void reiniciar(BigDecimal total) {
+        centimos.reset();
+        for (int i = 1; i < celdas.length(); i++) {
+            celdas.set(i, BigDecimal.ZERO);
+        }
+        celdas.set(0, total);
+    }
+
+    private int celda() {
+        long id = Thread.currentThread().threadId();
+        return (int) (id ^ (id >>> 16)) & (celdas.length() - 1);
+    }
+}
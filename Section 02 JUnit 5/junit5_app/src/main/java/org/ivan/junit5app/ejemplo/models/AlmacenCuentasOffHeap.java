@@ -0,0 +1,360 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Almacen de cuentas fuera del heap, pensado para bancos con decenas de millones de cuentas.
+ * En lugar de un objeto {@link Cuenta} con su {@code String} y su {@code BigDecimal} por cuenta,
+ * los datos se guardan por columnas en buffers directos:
+ * <ul>
+ *     <li>saldo en centimos: un {@code long} por cuenta</li>
+ *     <li>referencia al nombre: un {@code long} por cuenta con la posicion del nombre en el area de nombres</li>
+ *     <li>hash del nombre: un {@code int} por cuenta, para el indice y para no recalcularlo al crecer</li>
+ *     <li>area de nombres: {@code short} con la longitud y los bytes UTF-8 de cada nombre</li>
+ * </ul>
+ * mas una tabla hash abierta de {@code int} para buscar por nombre. Cada columna crece por bloques
+ * para no copiar lo ya escrito. Una cuenta ocupa unos 20 bytes mas su nombre, y el GC no tiene que
+ * recorrer nada de esto.
+ * <p>
+ * Para usar una cuenta con codigo que espera {@link Cuenta} se pide una {@link CuentaVista}, que es
+ * un objeto pequeno con el almacen y el numero de cuenta. Cada cuenta tiene una sola vista, que se
+ * crea la primera vez que se pide y despues se devuelve siempre la misma: asi {@link Banco} puede
+ * guardar en ella su estado (historial de saldos).
+ * <p>
+ * Un {@link Banco} puede trabajar directamente sobre {@link #comoLista()}. En ese caso el banco y la
+ * posicion de cada cuenta los da el almacen, y el banco busca con el indice del almacen y suma el
+ * total sobre la columna de saldos, asi solo existen en el heap las vistas de las cuentas que se han
+ * usado, unos 40 bytes cada una. Las instantaneas y las operaciones masivas si recorren todas las
+ * cuentas y crean todas las vistas. Igual que con {@link Cuenta}, debitos y
+ * creditos no se sincronizan: con varios hilos se hacen a traves de {@link Banco#transferir}.
+ * Agregar y buscar si se pueden llamar desde varios hilos.
+ */
+public class AlmacenCuentasOffHeap {
+    private static final int BITS_BLOQUE = 16;
+    private static final int CUENTAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA_BLOQUE = CUENTAS_POR_BLOQUE - 1;
+    private static final int TAMANIO_BLOQUE_NOMBRES = 4 * 1024 * 1024;
+    private static final long SIN_NOMBRE = -1L;
+    private static final VarHandle VISTA = MethodHandles.arrayElementVarHandle(CuentaVista[].class);
+
+    private LongBuffer[] saldos = new LongBuffer[0];
+    private LongBuffer[] nombres = new LongBuffer[0];
+    private IntBuffer[] hashes = new IntBuffer[0];
+    private ByteBuffer[] areaNombres = new ByteBuffer[0];
+    private int posicionNombres = TAMANIO_BLOQUE_NOMBRES;
+    // Cada posicion guarda el numero de cuenta + 1; 0 es hueco libre
+    private IntBuffer tabla = directo(1024 * Integer.BYTES).asIntBuffer();
+    private volatile int tamanio;
+    // Bloques de vistas ya creadas, uno por bloque de cuentas; se crean al pedir la primera vista
+    // y sus posiciones se leen y escriben con VISTA
+    private volatile CuentaVista[][] vistas = new CuentaVista[0][];
+    // Banco que usa comoLista() como sus cuentas, o null
+    private volatile Banco banco;
+
+    /**
+     * Agrega una cuenta y devuelve su numero, que es su posicion en el almacen.
+     */
+    public synchronized int agregar(String nombre, long centimos) {
+        int id = tamanio;
+        if ((id & MASCARA_BLOQUE) == 0 && (id >>> BITS_BLOQUE) == saldos.length) {
+            nuevoBloqueCuentas();
+        }
+        int bloque = id >>> BITS_BLOQUE;
+        int posicion = id & MASCARA_BLOQUE;
+        int hash = nombre != null ? nombre.hashCode() : 0;
+        byte[] bytes = nombre != null ? nombre.getBytes(StandardCharsets.UTF_8) : null;
+        saldos[bloque].put(posicion, centimos);
+        hashes[bloque].put(posicion, hash);
+        nombres[bloque].put(posicion, bytes != null ? guardarNombre(bytes) : SIN_NOMBRE);
+
+        if (bytes != null) {
+            if ((long) (id + 1) * 2 > tabla.capacity()) {
+                redimensionarTabla();
+            }
+            insertarEnTabla(id, hash, bytes);
+        }
+        tamanio = id + 1;
+        return id;
+    }
+
+    /**
+     * Busca por nombre y devuelve el numero de la primera cuenta con ese nombre, o -1.
+     */
+    public synchronized int buscar(String nombre) {
+        if (nombre == null) {
+            return -1;
+        }
+        int hash = nombre.hashCode();
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        int mascara = tabla.capacity() - 1;
+        for (int i = mezclar(hash) & mascara; ; i = (i + 1) & mascara) {
+            int valor = tabla.get(i);
+            if (valor == 0) {
+                return -1;
+            }
+            int id = valor - 1;
+            if (hashes[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE) == hash && nombreIgual(id, bytes)) {
+                return id;
+            }
+        }
+    }
+
+    public int size() {
+        return tamanio;
+    }
+
+    public long getCentimos(int id) {
+        comprobar(id);
+        return saldos[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE);
+    }
+
+    public void setCentimos(int id, long centimos) {
+        comprobar(id);
+        saldos[id >>> BITS_BLOQUE].put(id & MASCARA_BLOQUE, centimos);
+    }
+
+    public void debito(int id, long monto) {
+        if (tryDebito(id, monto) != ResultadoOperacion.ACEPTADA) {
+            throw new DineroInsuficienteException("No hay suficiente saldo");
+        }
+    }
+
+    public ResultadoOperacion tryDebito(int id, long monto) {
+        long saldo = getCentimos(id);
+        if (monto > saldo) {
+            return ResultadoOperacion.SALDO_INSUFICIENTE;
+        }
+        setCentimos(id, Math.subtractExact(saldo, monto));
+        return ResultadoOperacion.ACEPTADA;
+    }
+
+    public void credito(int id, long monto) {
+        setCentimos(id, Math.addExact(getCentimos(id), monto));
+    }
+
+    public String getNombre(int id) {
+        comprobar(id);
+        long referencia = nombres[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE);
+        if (referencia == SIN_NOMBRE) {
+            return null;
+        }
+        ByteBuffer area = areaNombres[(int) (referencia / TAMANIO_BLOQUE_NOMBRES)];
+        int posicion = (int) (referencia % TAMANIO_BLOQUE_NOMBRES);
+        int longitud = area.getShort(posicion);
+        byte[] bytes = new byte[longitud];
+        area.get(posicion + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Vista de la cuenta; varias llamadas con el mismo numero devuelven el mismo objeto.
+     */
+    public CuentaVista vista(int id) {
+        comprobar(id);
+        CuentaVista[] bloque = bloqueVistas(id >>> BITS_BLOQUE);
+        int posicion = id & MASCARA_BLOQUE;
+        CuentaVista vista = (CuentaVista) VISTA.getAcquire(bloque, posicion);
+        if (vista == null) {
+            CuentaVista nueva = new CuentaVista(this, id);
+            vista = (CuentaVista) VISTA.compareAndExchange(bloque, posicion, (CuentaVista) null, nueva);
+            if (vista == null) {
+                vista = nueva;
+            }
+        }
+        return vista;
+    }
+
+    /**
+     * Lista de solo lectura con una vista por cuenta; las vistas se crean al pedirlas y despues se
+     * devuelven siempre las mismas, asi que se puede pasar a {@link Banco#setCuentas}.
+     */
+    public List<Cuenta> comoLista() {
+        return new ListaCuentas(this);
+    }
+
+    /**
+     * Suma de los saldos de todas las cuentas, en centimos, sin crear ninguna vista.
+     */
+    public long getTotalCentimos() {
+        int cuentas = tamanio;
+        long total = 0;
+        for (int id = 0; id < cuentas; id++) {
+            total = Math.addExact(total, saldos[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE));
+        }
+        return total;
+    }
+
+    // Numero de vistas que existen en el heap; para las pruebas
+    int vistasCreadas() {
+        int creadas = 0;
+        for (CuentaVista[] bloque : vistas) {
+            for (int i = 0; bloque != null && i < bloque.length; i++) {
+                if (VISTA.getAcquire(bloque, i) != null) {
+                    creadas++;
+                }
+            }
+        }
+        return creadas;
+    }
+
+    Banco getBanco() {
+        return banco;
+    }
+
+    synchronized void asignarBanco(Banco banco) {
+        this.banco = banco;
+    }
+
+    // Solo si sigue siendo el suyo: otro banco pudo quedarse el almacen despues
+    synchronized void liberarBanco(Banco banco) {
+        if (this.banco == banco) {
+            this.banco = null;
+        }
+    }
+
+    /**
+     * Bytes reservados fuera del heap por todas las columnas, el area de nombres y el indice.
+     */
+    public synchronized long getMemoriaOffHeap() {
+        long total = (long) tabla.capacity() * Integer.BYTES;
+        total += (long) saldos.length * CUENTAS_POR_BLOQUE * (Long.BYTES + Long.BYTES + Integer.BYTES);
+        total += (long) areaNombres.length * TAMANIO_BLOQUE_NOMBRES;
+        return total;
+    }
+
+    private void comprobar(int id) {
+        if (id < 0 || id >= tamanio) {
+            throw new IndexOutOfBoundsException("Cuenta " + id + " fuera del almacen de " + tamanio);
+        }
+    }
+
+    private CuentaVista[] bloqueVistas(int bloque) {
+        CuentaVista[][] actuales = vistas;
+        if (bloque < actuales.length && actuales[bloque] != null) {
+            return actuales[bloque];
+        }
+        synchronized (this) {
+            actuales = vistas;
+            if (bloque < actuales.length && actuales[bloque] != null) {
+                return actuales[bloque];
+            }
+            // Se copia el array para que quien lo lea sin lock vea siempre bloques completos
+            actuales = Arrays.copyOf(actuales, Math.max(actuales.length, bloque + 1));
+            actuales[bloque] = new CuentaVista[CUENTAS_POR_BLOQUE];
+            vistas = actuales;
+            return actuales[bloque];
+        }
+    }
+
+    private void nuevoBloqueCuentas() {
+        int bloques = saldos.length + 1;
+        saldos = Arrays.copyOf(saldos, bloques);
+        nombres = Arrays.copyOf(nombres, bloques);
+        hashes = Arrays.copyOf(hashes, bloques);
+        saldos[bloques - 1] = directo(CUENTAS_POR_BLOQUE * Long.BYTES).asLongBuffer();
+        nombres[bloques - 1] = directo(CUENTAS_POR_BLOQUE * Long.BYTES).asLongBuffer();
+        hashes[bloques - 1] = directo(CUENTAS_POR_BLOQUE * Integer.BYTES).asIntBuffer();
+    }
+
+    private long guardarNombre(byte[] bytes) {
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Nombre demasiado largo para el almacen");
+        }
+        if (posicionNombres + 2 + bytes.length > TAMANIO_BLOQUE_NOMBRES) {
+            areaNombres = Arrays.copyOf(areaNombres, areaNombres.length + 1);
+            areaNombres[areaNombres.length - 1] = directo(TAMANIO_BLOQUE_NOMBRES);
+            posicionNombres = 0;
+        }
+        ByteBuffer area = areaNombres[areaNombres.length - 1];
+        area.putShort(posicionNombres, (short) bytes.length);
+        area.put(posicionNombres + 2, bytes);
+        long referencia = (long) (areaNombres.length - 1) * TAMANIO_BLOQUE_NOMBRES + posicionNombres;
+        posicionNombres += 2 + bytes.length;
+        return referencia;
+    }
+
+    private boolean nombreIgual(int id, byte[] bytes) {
+        long referencia = nombres[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE);
+        ByteBuffer area = areaNombres[(int) (referencia / TAMANIO_BLOQUE_NOMBRES)];
+        int posicion = (int) (referencia % TAMANIO_BLOQUE_NOMBRES);
+        if (area.getShort(posicion) != bytes.length) {
+            return false;
+        }
+        return area.slice(posicion + 2, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    // Con nombres repetidos se conserva la primera cuenta, igual que Banco.findCuenta
+    private void insertarEnTabla(int id, int hash, byte[] bytes) {
+        int mascara = tabla.capacity() - 1;
+        for (int i = mezclar(hash) & mascara; ; i = (i + 1) & mascara) {
+            int valor = tabla.get(i);
+            if (valor == 0) {
+                tabla.put(i, id + 1);
+                return;
+            }
+            int otro = valor - 1;
+            if (hashes[otro >>> BITS_BLOQUE].get(otro & MASCARA_BLOQUE) == hash && nombreIgual(otro, bytes)) {
+                return;
+            }
+        }
+    }
+
+    private void redimensionarTabla() {
+        IntBuffer nueva = directo(tabla.capacity() * 2 * Integer.BYTES).asIntBuffer();
+        for (int i = 0; i < tabla.capacity(); i++) {
+            int valor = tabla.get(i);
+            if (valor != 0) {
+                int id = valor - 1;
+                int mascara = nueva.capacity() - 1;
+                int j = mezclar(hashes[id >>> BITS_BLOQUE].get(id & MASCARA_BLOQUE)) & mascara;
+                while (nueva.get(j) != 0) {
+                    j = (j + 1) & mascara;
+                }
+                nueva.put(j, valor);
+            }
+        }
+        tabla = nueva;
+    }
+
+    private static int mezclar(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    static final class ListaCuentas extends AbstractList<Cuenta> implements RandomAccess {
+        private final AlmacenCuentasOffHeap almacen;
+
+        private ListaCuentas(AlmacenCuentasOffHeap almacen) {
+            this.almacen = almacen;
+        }
+
+        AlmacenCuentasOffHeap getAlmacen() {
+            return almacen;
+        }
+
+        @Override
+        public Cuenta get(int index) {
+            return almacen.vista(index);
+        }
+
+        @Override
+        public int size() {
+            return almacen.tamanio;
+        }
+    }
+
+    private static ByteBuffer directo(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
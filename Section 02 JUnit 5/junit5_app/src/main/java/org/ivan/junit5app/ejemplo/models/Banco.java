@@ -1,15 +1,63 @@
 package org.ivan.junit5app.ejemplo.models;
 
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+import org.ivan.junit5app.ejemplo.persistencia.DiarioTransferencias;
+
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 public class Banco {
+    // Numero de locks por defecto, siempre potencia de dos para calcular el stripe con una mascara
+    private static final int STRIPES_POR_DEFECTO = 64;
+
     private List<Cuenta> cuentas;
     private String nombre;
+    private final ReentrantLock[] stripes;
+    // Indice por nombre; se reemplaza entero en setCuentas para que los lectores nunca vean uno a medias
+    private volatile Map<String, Cuenta> indice = new ConcurrentHashMap<>();
+    // Si las cuentas son AlmacenCuentasOffHeap.comoLista(), se busca por nombre en el indice del almacen
+    private volatile AlmacenCuentasOffHeap almacen;
+    private volatile DiarioTransferencias diario;
+    private final AcumuladorSaldo total = new AcumuladorSaldo();
+    private final LongAdder operacionesAceptadas = new LongAdder();
+    private final LongAdder operacionesRechazadas = new LongAdder();
+    private final ControlVersiones versiones = new ControlVersiones();
+    // Se activa con la primera instantanea; hasta entonces las transferencias no guardan versiones
+    private volatile boolean versionado;
 
     public Banco() {
+        this(STRIPES_POR_DEFECTO);
+    }
+
+    /**
+     * Crea un banco cuyas transferencias se protegen con {@code numeroStripes} locks.
+     * El valor se redondea a la siguiente potencia de dos.
+     */
+    public Banco(int numeroStripes) {
+        if (numeroStripes <= 0) {
+            throw new IllegalArgumentException("El numero de stripes debe ser positivo");
+        }
         cuentas = new ArrayList<>();
+        int tamanio = Integer.highestOneBit(numeroStripes);
+        if (tamanio < numeroStripes) {
+            tamanio <<= 1;
+        }
+        stripes = new ReentrantLock[tamanio];
+        for (int i = 0; i < tamanio; i++) {
+            stripes[i] = new ReentrantLock();
+        }
     }
 
     public String getNombre() {
@@ -24,17 +72,546 @@ public class Banco {
         return cuentas;
     }
 
-    public void setCuentas(List<Cuenta> cuentas) {
+    /**
+     * Cambia las cuentas del banco. Con la lista de {@link AlmacenCuentasOffHeap#comoLista()} no se
+     * recorren las cuentas: el banco queda asociado al almacen, se busca con su indice y el total se
+     * suma sobre su columna de saldos, asi no se crea ninguna vista hasta que se usa su cuenta.
+     */
+    public synchronized void setCuentas(List<Cuenta> cuentas) {
+        AlmacenCuentasOffHeap anterior = this.almacen;
+        if (anterior != null) {
+            anterior.liberarBanco(this);
+            this.almacen = null;
+        }
+        if (cuentas instanceof AlmacenCuentasOffHeap.ListaCuentas) {
+            AlmacenCuentasOffHeap nuevo = ((AlmacenCuentasOffHeap.ListaCuentas) cuentas).getAlmacen();
+            nuevo.asignarBanco(this);
+            this.cuentas = cuentas;
+            this.indice = new ConcurrentHashMap<>();
+            this.almacen = nuevo;
+            this.total.reiniciar(recalcularTotal());
+            if (versionado) {
+                versionarTodas();
+            }
+            return;
+        }
+        Map<String, Cuenta> nuevoIndice = new ConcurrentHashMap<>(Math.max(16, cuentas.size() * 4 / 3 + 1));
+        for (int i = 0; i < cuentas.size(); i++) {
+            Cuenta cuenta = cuentas.get(i);
+            cuenta.setBanco(this);
+            cuenta.setPosicion(i);
+            indexar(nuevoIndice, cuenta);
+        }
         this.cuentas = cuentas;
+        this.indice = nuevoIndice;
+        this.total.reiniciar(recalcularTotal());
+        if (versionado) {
+            versionarTodas();
+        }
     }
 
-    public void addCuenta(Cuenta cuenta) {
+    public synchronized void addCuenta(Cuenta cuenta) {
+        cuenta.setPosicion(this.cuentas.size());
         this.cuentas.add(cuenta);
         cuenta.setBanco(this);
+        indexar(indice, cuenta);
+        if (cuenta.getSaldo() != null) {
+            total.sumar(cuenta.getSaldo());
+        }
+        if (versionado) {
+            versionarSola(cuenta);
+        }
+    }
+
+    /**
+     * Toma una instantanea de los saldos de todas las cuentas sin parar las transferencias.
+     * Las transferencias siguientes no se ven en ella, y nunca se ve solo la mitad de una.
+     * La primera llamada activa el versionado de saldos: desde ese momento cada transferencia
+     * guarda el saldo nuevo de sus cuentas, sin copiar el resto del banco.
+     * Solo se versionan los cambios que pasan por el banco (transferencias y los metodos de
+     * {@link Cuenta} de cuentas del banco), no las escrituras directas en un {@link AlmacenCuentasOffHeap}.
+     */
+    public synchronized InstantaneaBanco instantanea() {
+        if (!versionado) {
+            versionarTodas();
+        }
+        Cuenta[] copia = cuentas.toArray(new Cuenta[0]);
+        return new InstantaneaBanco(versiones, versiones.registrarLector(), copia);
+    }
+
+    /**
+     * Devuelve el dinero total del banco sin recorrer las cuentas: se mantiene al dia con cada
+     * debito, credito o cambio de saldo de las cuentas que pertenecen a este banco.
+     */
+    public BigDecimal getTotal() {
+        return total.total();
+    }
+
+    /**
+     * Numero de operaciones aplicadas por este banco: transferencias, tanto con {@link #transferir}
+     * como con {@link #tryTransferir}, lotes y operaciones masivas ({@link #aplicarTasa},
+     * {@link #aplicarComision}).
+     */
+    public long getOperacionesAceptadas() {
+        return operacionesAceptadas.sum();
+    }
+
+    /**
+     * Numero de operaciones rechazadas por falta de saldo, las mismas que cuenta
+     * {@link #getOperacionesAceptadas()}. Cuentan igual si se lanzo
+     * {@link DineroInsuficienteException} ({@link #transferir}, lotes) o se devolvio
+     * {@link ResultadoOperacion#SALDO_INSUFICIENTE}.
+     */
+    public long getOperacionesRechazadas() {
+        return operacionesRechazadas.sum();
+    }
+
+    /**
+     * Suma los saldos de todas las cuentas en paralelo con fork/join. Sirve para auditar que
+     * {@link #getTotal()} coincide con las cuentas; si hay transferencias en curso el resultado
+     * puede incluir dinero "en vuelo".
+     */
+    public BigDecimal recalcularTotal() {
+        AlmacenCuentasOffHeap almacen = this.almacen;
+        if (almacen != null) {
+            return BigDecimal.valueOf(almacen.getTotalCentimos(), 2);
+        }
+        Cuenta[] copia;
+        synchronized (this) {
+            copia = cuentas.toArray(new Cuenta[0]);
+        }
+        return ForkJoinPool.commonPool().invoke(new SumaSaldos(copia, 0, copia.length));
+    }
+
+    /**
+     * Aplica una tasa de interes a todas las cuentas de una vez, por ejemplo a fin de mes. Los saldos
+     * se pasan a un array de centimos, se calculan con {@link OperacionMasiva#aplicarTasa} y solo se
+     * escriben las cuentas que cambian. Se hace con todos los locks tomados, asi que ninguna
+     * transferencia ve el banco a medias. Lanza {@link ArithmeticException} sin tocar nada si algun
+     * saldo tiene mas de dos decimales.
+     */
+    public ResultadoOperacion aplicarTasa(BigDecimal tasa, RoundingMode redondeo, PoliticaDescubierto politica) {
+        return aplicarMasiva(centimos -> OperacionMasiva.aplicarTasa(centimos, tasa, redondeo, politica));
+    }
+
+    /**
+     * Cobra la misma comision, en centimos, a todas las cuentas. Igual que {@link #aplicarTasa}.
+     */
+    public ResultadoOperacion aplicarComision(long comision, PoliticaDescubierto politica) {
+        return aplicarMasiva(centimos -> OperacionMasiva.aplicarComision(centimos, comision, politica));
+    }
+
+    private synchronized ResultadoOperacion aplicarMasiva(Function<long[], ResultadoOperacion> operacion) {
+        // El diario solo sabe reproducir transferencias
+        if (diario != null) {
+            throw new IllegalStateException("Las operaciones masivas no se pueden registrar en el diario");
+        }
+        int[] todos = todosLosStripes();
+        bloquear(todos);
+        try {
+            long[] centimos = new long[cuentas.size()];
+            for (int i = 0; i < centimos.length; i++) {
+                comprobarNoAjena(cuentas.get(i));
+                centimos[i] = enCentimos(cuentas.get(i));
+            }
+            long[] anteriores = centimos.clone();
+            if (operacion.apply(centimos) != ResultadoOperacion.ACEPTADA) {
+                operacionesRechazadas.increment();
+                return ResultadoOperacion.SALDO_INSUFICIENTE;
+            }
+
+            List<Cuenta> modificadas = new ArrayList<>();
+            for (int i = 0; i < centimos.length; i++) {
+                if (centimos[i] != anteriores[i]) {
+                    Cuenta cuenta = cuentas.get(i);
+                    if (cuenta instanceof CuentaCentimos) {
+                        ((CuentaCentimos) cuenta).setCentimos(centimos[i]);
+                    } else {
+                        cuenta.setSaldo(BigDecimal.valueOf(centimos[i], 2));
+                    }
+                    modificadas.add(cuenta);
+                }
+            }
+            if (versionado) {
+                versionar(modificadas);
+            }
+            operacionesAceptadas.increment();
+            return ResultadoOperacion.ACEPTADA;
+        } finally {
+            desbloquear(todos);
+        }
+    }
+
+    private static long enCentimos(Cuenta cuenta) {
+        if (cuenta instanceof CuentaCentimos) {
+            return ((CuentaCentimos) cuenta).getCentimos();
+        }
+        if (cuenta.getSaldo() == null) {
+            throw new IllegalStateException("La cuenta " + cuenta.getNombre() + " no tiene saldo");
+        }
+        return CuentaCentimos.aCentimos(cuenta.getSaldo());
+    }
+
+    void acumular(Cuenta cuenta, BigDecimal monto) {
+        total.sumar(monto);
+        versionarSiSuelta(cuenta);
+    }
+
+    void acumularCentimos(Cuenta cuenta, long monto) {
+        total.sumarCentimos(monto);
+        versionarSiSuelta(cuenta);
+    }
+
+    void acumularCambio(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+        if (nuevo != null) {
+            total.sumar(anterior != null ? nuevo.subtract(anterior) : nuevo);
+        } else if (anterior != null) {
+            total.sumar(anterior.negate());
+        }
+        versionarSiSuelta(cuenta);
     }
 
+    // Un debito o credito hecho fuera de una transferencia es una version por si solo; dentro de una
+    // transferencia el lock ya es de este hilo y la version se guarda al final con todas las cuentas
+    private void versionarSiSuelta(Cuenta cuenta) {
+        if (versionado && cuenta.historial != null && !stripes[indiceStripe(cuenta)].isHeldByCurrentThread()) {
+            versionarSola(cuenta);
+        }
+    }
+
+    private void versionarSola(Cuenta cuenta) {
+        ReentrantLock lock = stripes[indiceStripe(cuenta)];
+        lock.lock();
+        try {
+            long version = versiones.emitir();
+            try {
+                versiones.instalar(cuenta, version);
+            } finally {
+                versiones.confirmar(version);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Con todos los locks tomados: ninguna transferencia queda a medias en la version inicial
+    private void versionarTodas() {
+        int[] todos = todosLosStripes();
+        bloquear(todos);
+        try {
+            long version = versiones.emitir();
+            try {
+                for (Cuenta cuenta : cuentas) {
+                    versiones.instalar(cuenta, version);
+                }
+                versionado = true;
+            } finally {
+                versiones.confirmar(version);
+            }
+        } finally {
+            desbloquear(todos);
+        }
+    }
+
+    // Se llama con los locks de las cuentas tomados; las cuentas que no son del banco no se versionan
+    private void versionar(Iterable<Cuenta> cuentasModificadas) {
+        long version = versiones.emitir();
+        try {
+            for (Cuenta cuenta : cuentasModificadas) {
+                if (cuenta.historial != null) {
+                    versiones.instalar(cuenta, version);
+                }
+            }
+        } finally {
+            versiones.confirmar(version);
+        }
+    }
+
+    public DiarioTransferencias getDiario() {
+        return diario;
+    }
+
+    /**
+     * Activa el diario de transferencias. A partir de aqui cada transferencia hecha con
+     * {@link #transferir} o {@link #transferirLote} se anade al diario, y ambas cuentas
+     * tienen que pertenecer a este banco. Con {@code null} se desactiva.
+     */
+    public void setDiario(DiarioTransferencias diario) {
+        this.diario = diario;
+    }
+
+    /**
+     * Busca una cuenta por nombre en O(1). Si hay varias con el mismo nombre devuelve la
+     * primera que se agrego, igual que recorrer {@link #getCuentas()} con un filtro.
+     * Se puede llamar mientras otros hilos hacen transferencias.
+     */
+    public Optional<Cuenta> findCuenta(String nombre) {
+        if (nombre == null) {
+            return Optional.empty();
+        }
+        AlmacenCuentasOffHeap almacen = this.almacen;
+        if (almacen != null) {
+            int id = almacen.buscar(nombre);
+            return id >= 0 ? Optional.of(almacen.vista(id)) : Optional.empty();
+        }
+        return Optional.ofNullable(indice.get(nombre));
+    }
+
+    // Lo llama Cuenta.setNombre para que el indice siga al nombre nuevo. Los dos nombres se vuelven
+    // a buscar en la lista: otra cuenta puede seguir llamandose como antes, o ser anterior con el
+    // nombre nuevo, y en los dos casos tiene que ganar la primera que se agrego
+    synchronized void renombrarCuenta(Cuenta cuenta, String nombreAnterior) {
+        reindexar(nombreAnterior);
+        reindexar(cuenta.getNombre());
+    }
+
+    private void reindexar(String nombre) {
+        if (nombre == null) {
+            return;
+        }
+        for (Cuenta cuenta : cuentas) {
+            if (nombre.equals(cuenta.getNombre())) {
+                indice.put(nombre, cuenta);
+                return;
+            }
+        }
+        indice.remove(nombre);
+    }
+
+    private static void indexar(Map<String, Cuenta> indice, Cuenta cuenta) {
+        if (cuenta.getNombre() != null) {
+            indice.putIfAbsent(cuenta.getNombre(), cuenta);
+        }
+    }
+
+    /**
+     * Transfiere {@code monto} de una cuenta a otra. Es seguro llamarlo desde varios hilos:
+     * cada cuenta se asocia a un stripe y los dos locks se toman siempre en orden creciente
+     * de indice, asi dos transferencias cruzadas nunca se bloquean mutuamente. Las cuentas pueden
+     * no tener banco, pero si son de otro banco se lanza {@link IllegalArgumentException}.
+     */
     public void transferir(Cuenta cuentaOrigen, Cuenta cuentaDestino, BigDecimal monto) {
-        cuentaOrigen.debito(monto);
-        cuentaDestino.credito(monto);
+        if (tryTransferir(cuentaOrigen, cuentaDestino, monto) != ResultadoOperacion.ACEPTADA) {
+            throw new DineroInsuficienteException("No hay suficiente saldo");
+        }
+    }
+
+    /**
+     * Igual que {@link #transferir} pero si falta saldo devuelve
+     * {@link ResultadoOperacion#SALDO_INSUFICIENTE} en lugar de lanzar la excepcion.
+     */
+    public ResultadoOperacion tryTransferir(Cuenta cuentaOrigen, Cuenta cuentaDestino, BigDecimal monto) {
+        DiarioTransferencias diario = this.diario;
+        if (diario != null) {
+            comprobarPertenece(cuentaOrigen);
+            comprobarPertenece(cuentaDestino);
+        } else {
+            comprobarNoAjena(cuentaOrigen);
+            comprobarNoAjena(cuentaDestino);
+        }
+        int primero = indiceStripe(cuentaOrigen);
+        int segundo = indiceStripe(cuentaDestino);
+        if (primero > segundo) {
+            int aux = primero;
+            primero = segundo;
+            segundo = aux;
+        }
+
+        stripes[primero].lock();
+        try {
+            if (segundo != primero) {
+                stripes[segundo].lock();
+            }
+            // Lo que puede fallar del diario se hace antes de tocar los saldos
+            boolean reservado = false;
+            if (diario != null) {
+                diario.reservar(monto);
+                reservado = true;
+            }
+            try {
+                if (cuentaOrigen.tryDebito(monto) != ResultadoOperacion.ACEPTADA) {
+                    operacionesRechazadas.increment();
+                    return ResultadoOperacion.SALDO_INSUFICIENTE;
+                }
+                cuentaDestino.credito(monto);
+                if (versionado) {
+                    versionar(cuentaOrigen == cuentaDestino ? List.of(cuentaOrigen) : List.of(cuentaOrigen, cuentaDestino));
+                }
+                operacionesAceptadas.increment();
+                if (diario != null) {
+                    reservado = false;
+                    diario.registrar(cuentaOrigen.getPosicion(), cuentaDestino.getPosicion(), monto);
+                }
+                return ResultadoOperacion.ACEPTADA;
+            } finally {
+                if (reservado) {
+                    diario.liberar(1);
+                }
+                if (segundo != primero) {
+                    stripes[segundo].unlock();
+                }
+            }
+        } finally {
+            stripes[primero].unlock();
+        }
+    }
+
+    /**
+     * Aplica un lote de transferencias de una sola vez. Primero se calcula el neto de cada cuenta
+     * en todo el lote; despues, con los locks de todas las cuentas tomados, se comprueba que
+     * ninguna quede en negativo y se hace un unico debito o credito por cuenta.
+     * Si alguna cuenta no tiene saldo para su neto se lanza {@link DineroInsuficienteException}
+     * y no se modifica ninguna cuenta. Igual con {@link ArithmeticException} si el neto de una cuenta
+     * en centimos tiene mas de dos decimales o la desborda.
+     */
+    public void transferirLote(List<Transferencia> transferencias) {
+        // IdentityHashMap porque equals/hashCode de Cuenta dependen del saldo
+        IdentityHashMap<Cuenta, BigDecimal> netos = new IdentityHashMap<>();
+        for (Transferencia transferencia : transferencias) {
+            netos.merge(transferencia.getOrigen(), transferencia.getMonto().negate(), BigDecimal::add);
+            netos.merge(transferencia.getDestino(), transferencia.getMonto(), BigDecimal::add);
+        }
+        if (netos.isEmpty()) {
+            return;
+        }
+        DiarioTransferencias diario = this.diario;
+        if (diario != null) {
+            netos.keySet().forEach(this::comprobarPertenece);
+        } else {
+            netos.keySet().forEach(this::comprobarNoAjena);
+        }
+
+        BitSet stripesLote = new BitSet(stripes.length);
+        for (Cuenta cuenta : netos.keySet()) {
+            stripesLote.set(indiceStripe(cuenta));
+        }
+        int[] orden = stripesLote.stream().toArray();
+
+        bloquear(orden);
+        try {
+            for (Map.Entry<Cuenta, BigDecimal> neto : netos.entrySet()) {
+                comprobarCentimos(neto.getKey(), neto.getValue());
+                if (neto.getValue().signum() < 0 && neto.getValue().negate().compareTo(neto.getKey().getSaldo()) > 0) {
+                    operacionesRechazadas.increment();
+                    throw new DineroInsuficienteException("No hay suficiente saldo");
+                }
+            }
+            boolean reservado = false;
+            if (diario != null) {
+                diario.reservar(transferencias);
+                reservado = true;
+            }
+            try {
+                for (Map.Entry<Cuenta, BigDecimal> neto : netos.entrySet()) {
+                    int signo = neto.getValue().signum();
+                    if (signo < 0) {
+                        neto.getKey().debito(neto.getValue().negate());
+                    } else if (signo > 0) {
+                        neto.getKey().credito(neto.getValue());
+                    }
+                }
+                if (versionado) {
+                    versionar(netos.keySet());
+                }
+                operacionesAceptadas.increment();
+                if (diario != null) {
+                    reservado = false;
+                    for (Transferencia transferencia : transferencias) {
+                        diario.registrar(transferencia.getOrigen().getPosicion(), transferencia.getDestino().getPosicion(),
+                                transferencia.getMonto());
+                    }
+                }
+            } finally {
+                if (reservado) {
+                    diario.liberar(transferencias.size());
+                }
+            }
+        } finally {
+            desbloquear(orden);
+        }
+    }
+
+    // Las cuentas en centimos lanzan ArithmeticException con mas de dos decimales o si se desbordan;
+    // se comprueba antes de aplicar nada para que el lote no quede a medias
+    private static void comprobarCentimos(Cuenta cuenta, BigDecimal neto) {
+        if (cuenta instanceof CuentaCentimos) {
+            Math.addExact(((CuentaCentimos) cuenta).getCentimos(), CuentaCentimos.aCentimos(neto));
+        } else if (cuenta instanceof CuentaVista) {
+            Math.addExact(((CuentaVista) cuenta).getCentimos(), CuentaCentimos.aCentimos(neto));
+        }
+    }
+
+    private void comprobarPertenece(Cuenta cuenta) {
+        if (cuenta.getBanco() != this || cuenta.getPosicion() < 0) {
+            throw new IllegalArgumentException("La cuenta " + cuenta.getNombre() + " no pertenece al banco");
+        }
+    }
+
+    // Una cuenta de otro banco guarda sus versiones con los locks de ese banco, y aqui ya se tienen los
+    // de este: dos bancos moviendo cuentas del otro a la vez se bloquearian mutuamente
+    private void comprobarNoAjena(Cuenta cuenta) {
+        if (cuenta.getBanco() != null && cuenta.getBanco() != this) {
+            throw new IllegalArgumentException("La cuenta " + cuenta.getNombre() + " pertenece a otro banco");
+        }
+    }
+
+    // Los indices llegan ordenados de menor a mayor, el mismo orden que usa transferir
+    private void bloquear(int[] orden) {
+        for (int stripe : orden) {
+            stripes[stripe].lock();
+        }
+    }
+
+    private void desbloquear(int[] orden) {
+        for (int i = orden.length - 1; i >= 0; i--) {
+            stripes[orden[i]].unlock();
+        }
+    }
+
+    private int[] todosLosStripes() {
+        int[] todos = new int[stripes.length];
+        for (int i = 0; i < todos.length; i++) {
+            todos[i] = i;
+        }
+        return todos;
+    }
+
+    private int indiceStripe(Cuenta cuenta) {
+        int h = cuenta.claveBloqueo();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    private static class SumaSaldos extends RecursiveTask<BigDecimal> {
+        private static final int UMBRAL = 10_000;
+
+        private final Cuenta[] cuentas;
+        private final int desde;
+        private final int hasta;
+
+        SumaSaldos(Cuenta[] cuentas, int desde, int hasta) {
+            this.cuentas = cuentas;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected BigDecimal compute() {
+            if (hasta - desde <= UMBRAL) {
+                BigDecimal suma = BigDecimal.ZERO;
+                for (int i = desde; i < hasta; i++) {
+                    BigDecimal saldo = cuentas[i].getSaldo();
+                    if (saldo != null) {
+                        suma = suma.add(saldo);
+                    }
+                }
+                return suma;
+            }
+            int mitad = (desde + hasta) >>> 1;
+            SumaSaldos izquierda = new SumaSaldos(cuentas, desde, mitad);
+            izquierda.fork();
+            BigDecimal derecha = new SumaSaldos(cuentas, mitad, hasta).compute();
+            return izquierda.join().add(derecha);
+        }
     }
 }
@@ -0,0 +1,109 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versiones de los saldos de un {@link Banco} para leer instantaneas sin bloquear transferencias.
+ * Cada cambio confirmado recibe un numero de version creciente y cada cuenta guarda una lista
+ * enlazada con sus saldos anteriores, del mas nuevo al mas viejo. Una instantanea se queda con la
+ * ultima version confirmada y lee de cada cuenta el saldo mas nuevo que no la supere.
+ * <p>
+ * Las versiones se confirman en orden: un escritor no publica la suya hasta que se publicaron
+ * todas las anteriores, asi una instantanea nunca ve una transferencia sin las que la precedieron.
+ * Los saldos viejos se recortan cada pocos cambios, conservando lo que necesiten los lectores abiertos.
+ */
+class ControlVersiones {
+    private static final int RECORTE_CADA = 8;
+
+    private final AtomicLong emitida = new AtomicLong();
+    private volatile long confirmada;
+    // Version de cada instantanea abierta y cuantas hay con esa version
+    private final TreeMap<Long, Integer> lectores = new TreeMap<>();
+
+    /**
+     * Reserva la siguiente version. Hay que llamarlo con los locks de las cuentas ya tomados
+     * y confirmarla siempre con {@link #confirmar(long)}, o los demas escritores se quedan esperando.
+     */
+    long emitir() {
+        return emitida.incrementAndGet();
+    }
+
+    void confirmar(long version) {
+        int vueltas = 0;
+        while (confirmada != version - 1) {
+            if (++vueltas % 64 == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        confirmada = version;
+    }
+
+    void instalar(Cuenta cuenta, long version) {
+        Version anterior = cuenta.historial;
+        Version nueva = new Version(version, cuenta.getSaldo(), anterior, anterior != null ? anterior.numero + 1 : 0);
+        cuenta.historial = nueva;
+        if (nueva.numero % RECORTE_CADA == 0) {
+            recortar(nueva);
+        }
+    }
+
+    long registrarLector() {
+        synchronized (lectores) {
+            long version = confirmada;
+            lectores.merge(version, 1, Integer::sum);
+            return version;
+        }
+    }
+
+    void liberarLector(long version) {
+        synchronized (lectores) {
+            lectores.computeIfPresent(version, (clave, numero) -> numero == 1 ? null : numero - 1);
+        }
+    }
+
+    /**
+     * Saldo de la cuenta en la version indicada. Lanza {@link IllegalArgumentException} si la
+     * cuenta no tenia ninguna version entonces.
+     */
+    static BigDecimal saldoEn(Cuenta cuenta, long version) {
+        for (Version v = cuenta.historial; v != null; v = v.anterior) {
+            if (v.version <= version) {
+                return v.saldo;
+            }
+        }
+        throw new IllegalArgumentException("La cuenta " + cuenta.getNombre() + " no existia en la version " + version);
+    }
+
+    // Se corta la lista por debajo del saldo que veria el lector mas viejo; lo de detras ya no lo lee nadie
+    private void recortar(Version cabeza) {
+        long horizonte;
+        synchronized (lectores) {
+            horizonte = lectores.isEmpty() ? confirmada : lectores.firstKey();
+        }
+        for (Version v = cabeza; v != null; v = v.anterior) {
+            if (v.version <= horizonte) {
+                v.anterior = null;
+                return;
+            }
+        }
+    }
+
+    static final class Version {
+        private final long version;
+        private final BigDecimal saldo;
+        // Cuantos cambios lleva la cuenta, para decidir cuando recortar sin recorrer la lista
+        private final long numero;
+        private volatile Version anterior;
+
+        private Version(long version, BigDecimal saldo, Version anterior, long numero) {
+            this.version = version;
+            this.saldo = saldo;
+            this.anterior = anterior;
+            this.numero = numero;
+        }
+    }
+}
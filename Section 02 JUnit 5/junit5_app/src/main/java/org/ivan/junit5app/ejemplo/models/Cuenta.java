@@ -9,6 +9,10 @@ public class Cuenta {
     private String nombre;
     private BigDecimal saldo;
     private Banco banco;
+    // Posicion en Banco.getCuentas(), la usa el diario de transferencias; -1 si no esta en ningun banco
+    private int posicion = -1;
+    // Saldos anteriores para las instantaneas de Banco; null mientras el banco no tome ninguna
+    volatile ControlVersiones.Version historial;
 
 
     public Cuenta() {
@@ -21,14 +25,31 @@ public class Cuenta {
     }
 
     public void debito(BigDecimal monto) {
-        if (monto.compareTo(this.saldo) > 0) {
+        if (tryDebito(monto) != ResultadoOperacion.ACEPTADA) {
             throw new DineroInsuficienteException("No hay suficiente saldo");
         }
+    }
+
+    /**
+     * Igual que {@link #debito(BigDecimal)} pero sin lanzar excepcion si no hay saldo, asi un
+     * rechazo no paga el coste de crear la excepcion y su stack trace.
+     */
+    public ResultadoOperacion tryDebito(BigDecimal monto) {
+        if (monto.compareTo(this.saldo) > 0) {
+            return ResultadoOperacion.SALDO_INSUFICIENTE;
+        }
         this.saldo = this.saldo.subtract(monto);
+        if (banco != null) {
+            banco.acumular(this, monto.negate());
+        }
+        return ResultadoOperacion.ACEPTADA;
     }
 
     public void credito(BigDecimal monto) {
         this.saldo = this.saldo.add(monto);
+        if (banco != null) {
+            banco.acumular(this, monto);
+        }
     }
 
     public String getNombre() {
@@ -36,7 +57,11 @@ public class Cuenta {
     }
 
     public void setNombre(String nombre) {
+        String nombreAnterior = this.nombre;
         this.nombre = nombre;
+        if (banco != null && !Objects.equals(nombreAnterior, nombre)) {
+            banco.renombrarCuenta(this, nombreAnterior);
+        }
     }
 
     public BigDecimal getSaldo() {
@@ -44,7 +69,11 @@ public class Cuenta {
     }
 
     public void setSaldo(BigDecimal saldo) {
+        BigDecimal anterior = this.saldo;
         this.saldo = saldo;
+        if (banco != null) {
+            banco.acumularCambio(this, anterior, saldo);
+        }
     }
 
     public Banco getBanco() {
@@ -55,15 +84,31 @@ public class Cuenta {
         this.banco = banco;
     }
 
+    public int getPosicion() {
+        return posicion;
+    }
+
+    void setPosicion(int posicion) {
+        this.posicion = posicion;
+    }
+
+    // Clave para elegir el lock en Banco. Se usa la identidad del objeto porque equals/hashCode
+    // dependen del saldo, que cambia. Tambien vale para CuentaVista: el almacen da una sola vista
+    // por cuenta
+    int claveBloqueo() {
+        return System.identityHashCode(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         Cuenta cuenta = (Cuenta) o;
-        return Objects.equals(nombre, cuenta.nombre) && Objects.equals(saldo, cuenta.saldo);
+        // Con los getters, para que las subclases que guardan los datos en otro sitio (CuentaVista) comparen bien
+        return Objects.equals(getNombre(), cuenta.getNombre()) && Objects.equals(getSaldo(), cuenta.getSaldo());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(nombre, saldo);
+        return Objects.hash(getNombre(), getSaldo());
     }
 }
@@ -0,0 +1,62 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cuenta que se puede usar desde varios hilos sin locks. El saldo vive en un {@link AtomicReference}
+ * y los debitos y creditos se hacen con un bucle de compare-and-set: se comprueba el saldo y se
+ * intenta reemplazar; si otro hilo lo cambio entre medias se vuelve a comprobar. Asi dos debitos
+ * concurrentes nunca pueden dejar la cuenta en negativo.
+ */
+public class CuentaAtomica extends Cuenta {
+    private final AtomicReference<BigDecimal> saldo = new AtomicReference<>(BigDecimal.ZERO);
+
+    public CuentaAtomica() {
+
+    }
+
+    public CuentaAtomica(String nombre, BigDecimal saldo) {
+        setNombre(nombre);
+        this.saldo.set(saldo);
+    }
+
+    @Override
+    public ResultadoOperacion tryDebito(BigDecimal monto) {
+        BigDecimal actual;
+        do {
+            actual = saldo.get();
+            if (monto.compareTo(actual) > 0) {
+                return ResultadoOperacion.SALDO_INSUFICIENTE;
+            }
+        } while (!saldo.compareAndSet(actual, actual.subtract(monto)));
+        if (getBanco() != null) {
+            getBanco().acumular(this, monto.negate());
+        }
+        return ResultadoOperacion.ACEPTADA;
+    }
+
+    @Override
+    public void credito(BigDecimal monto) {
+        BigDecimal actual;
+        do {
+            actual = saldo.get();
+        } while (!saldo.compareAndSet(actual, actual.add(monto)));
+        if (getBanco() != null) {
+            getBanco().acumular(this, monto);
+        }
+    }
+
+    @Override
+    public BigDecimal getSaldo() {
+        return saldo.get();
+    }
+
+    @Override
+    public void setSaldo(BigDecimal saldo) {
+        BigDecimal anterior = this.saldo.getAndSet(saldo);
+        if (getBanco() != null) {
+            getBanco().acumularCambio(this, anterior, saldo);
+        }
+    }
+}
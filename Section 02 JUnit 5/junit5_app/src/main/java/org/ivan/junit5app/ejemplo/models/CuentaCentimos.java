@@ -0,0 +1,94 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Cuenta que guarda el saldo como un {@code long} en centimos.
+ * Los metodos {@link #debito(long)} y {@link #credito(long)} no crean objetos, y los getters
+ * con {@link BigDecimal} se mantienen como conversion para no romper a quien ya usa {@link Cuenta}.
+ */
+public class CuentaCentimos extends Cuenta {
+    private static final int ESCALA = 2;
+
+    private long centimos;
+
+    public CuentaCentimos() {
+
+    }
+
+    public CuentaCentimos(String nombre, long centimos) {
+        setNombre(nombre);
+        this.centimos = centimos;
+    }
+
+    public CuentaCentimos(String nombre, BigDecimal saldo) {
+        this(nombre, aCentimos(saldo));
+    }
+
+    public void debito(long monto) {
+        if (tryDebito(monto) != ResultadoOperacion.ACEPTADA) {
+            throw new DineroInsuficienteException("No hay suficiente saldo");
+        }
+    }
+
+    public ResultadoOperacion tryDebito(long monto) {
+        if (monto > this.centimos) {
+            return ResultadoOperacion.SALDO_INSUFICIENTE;
+        }
+        this.centimos = Math.subtractExact(this.centimos, monto);
+        if (getBanco() != null) {
+            getBanco().acumularCentimos(this, -monto);
+        }
+        return ResultadoOperacion.ACEPTADA;
+    }
+
+    public void credito(long monto) {
+        this.centimos = Math.addExact(this.centimos, monto);
+        if (getBanco() != null) {
+            getBanco().acumularCentimos(this, monto);
+        }
+    }
+
+    @Override
+    public ResultadoOperacion tryDebito(BigDecimal monto) {
+        return tryDebito(aCentimos(monto));
+    }
+
+    @Override
+    public void credito(BigDecimal monto) {
+        credito(aCentimos(monto));
+    }
+
+    public long getCentimos() {
+        return centimos;
+    }
+
+    public void setCentimos(long centimos) {
+        long anterior = this.centimos;
+        this.centimos = centimos;
+        if (getBanco() != null) {
+            getBanco().acumularCentimos(this, centimos - anterior);
+        }
+    }
+
+    @Override
+    public BigDecimal getSaldo() {
+        return BigDecimal.valueOf(centimos, ESCALA);
+    }
+
+    @Override
+    public void setSaldo(BigDecimal saldo) {
+        setCentimos(aCentimos(saldo));
+    }
+
+    /**
+     * Convierte un importe a centimos. Lanza {@link ArithmeticException} si tiene mas de dos
+     * decimales o si no cabe en un {@code long}, en lugar de redondear o desbordar en silencio.
+     */
+    public static long aCentimos(BigDecimal monto) {
+        return monto.setScale(ESCALA, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,102 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+
+import java.math.BigDecimal;
+
+/**
+ * Vista de una cuenta guardada en un {@link AlmacenCuentasOffHeap}. Solo guarda el almacen y el
+ * numero de cuenta; nombre y saldo se leen y escriben en el almacen. Se obtiene con
+ * {@link AlmacenCuentasOffHeap#vista(int)}, que devuelve siempre la misma vista para cada cuenta:
+ * el estado que {@link Banco} guarda en la cuenta (banco, posicion, historial) vive en la vista.
+ * Si el banco usa {@link AlmacenCuentasOffHeap#comoLista()}, banco y posicion los da el almacen.
+ */
+public class CuentaVista extends Cuenta {
+    private final AlmacenCuentasOffHeap almacen;
+    private final int id;
+
+    CuentaVista(AlmacenCuentasOffHeap almacen, int id) {
+        this.almacen = almacen;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void debito(long monto) {
+        if (tryDebito(monto) != ResultadoOperacion.ACEPTADA) {
+            throw new DineroInsuficienteException("No hay suficiente saldo");
+        }
+    }
+
+    public ResultadoOperacion tryDebito(long monto) {
+        ResultadoOperacion resultado = almacen.tryDebito(id, monto);
+        if (resultado == ResultadoOperacion.ACEPTADA && getBanco() != null) {
+            getBanco().acumularCentimos(this, -monto);
+        }
+        return resultado;
+    }
+
+    public void credito(long monto) {
+        almacen.credito(id, monto);
+        if (getBanco() != null) {
+            getBanco().acumularCentimos(this, monto);
+        }
+    }
+
+    @Override
+    public ResultadoOperacion tryDebito(BigDecimal monto) {
+        return tryDebito(CuentaCentimos.aCentimos(monto));
+    }
+
+    @Override
+    public void credito(BigDecimal monto) {
+        credito(CuentaCentimos.aCentimos(monto));
+    }
+
+    public long getCentimos() {
+        return almacen.getCentimos(id);
+    }
+
+    // Asignados por Banco.setCuentas a la vista, o si no los del almacen entero
+    @Override
+    public Banco getBanco() {
+        Banco propio = super.getBanco();
+        return propio != null ? propio : almacen.getBanco();
+    }
+
+    @Override
+    public int getPosicion() {
+        if (super.getBanco() != null) {
+            return super.getPosicion();
+        }
+        return almacen.getBanco() != null ? id : -1;
+    }
+
+    @Override
+    public String getNombre() {
+        return almacen.getNombre(id);
+    }
+
+    // El nombre forma parte del indice del almacen y no se puede cambiar
+    @Override
+    public void setNombre(String nombre) {
+        throw new UnsupportedOperationException("El nombre de una cuenta del almacen no se puede cambiar");
+    }
+
+    @Override
+    public BigDecimal getSaldo() {
+        return BigDecimal.valueOf(almacen.getCentimos(id), 2);
+    }
+
+    @Override
+    public void setSaldo(BigDecimal saldo) {
+        long nuevo = CuentaCentimos.aCentimos(saldo);
+        long anterior = almacen.getCentimos(id);
+        almacen.setCentimos(id, nuevo);
+        if (getBanco() != null) {
+            getBanco().acumularCentimos(this, nuevo - anterior);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Foto de los saldos de un {@link Banco} en un instante, obtenida con {@link Banco#instantanea()}.
+ * Los saldos no cambian aunque se sigan haciendo transferencias, y nunca incluyen dinero "en vuelo":
+ * o se ve una transferencia entera o no se ve. Mientras esta abierta el banco conserva los saldos
+ * viejos que necesita, asi que hay que cerrarla al terminar, mejor con try-with-resources.
+ */
+public class InstantaneaBanco implements AutoCloseable {
+    private final ControlVersiones versiones;
+    private final long version;
+    private final List<Cuenta> cuentas;
+    private volatile boolean cerrada;
+
+    InstantaneaBanco(ControlVersiones versiones, long version, Cuenta[] cuentas) {
+        this.versiones = versiones;
+        this.version = version;
+        this.cuentas = Collections.unmodifiableList(Arrays.asList(cuentas));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Cuentas que tenia el banco al tomar la instantanea.
+     */
+    public List<Cuenta> getCuentas() {
+        return cuentas;
+    }
+
+    public BigDecimal getSaldo(Cuenta cuenta) {
+        comprobarAbierta();
+        return ControlVersiones.saldoEn(cuenta, version);
+    }
+
+    public BigDecimal getTotal() {
+        comprobarAbierta();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Cuenta cuenta : cuentas) {
+            BigDecimal saldo = ControlVersiones.saldoEn(cuenta, version);
+            if (saldo != null) {
+                total = total.add(saldo);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!cerrada) {
+            cerrada = true;
+            versiones.liberarLector(version);
+        }
+    }
+
+    // Una vez cerrada el banco puede haber recortado los saldos de esta version
+    private void comprobarAbierta() {
+        if (cerrada) {
+            throw new IllegalStateException("La instantanea esta cerrada");
+        }
+    }
+}
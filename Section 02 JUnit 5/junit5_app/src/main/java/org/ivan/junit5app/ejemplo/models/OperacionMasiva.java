@@ -0,0 +1,125 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Intereses y comisiones sobre un array de saldos en centimos, en una sola pasada y sin crear objetos.
+ * La tasa se convierte una vez a una fraccion entera {@code numerador / 10^escala}, asi que cada
+ * saldo se calcula con una multiplicacion y una division de {@code long}, redondeando con el
+ * {@link RoundingMode} indicado igual que lo haria {@link BigDecimal#setScale(int, RoundingMode)}.
+ * <p>
+ * Antes de escribir se recorre el array una vez para sacar el minimo y el maximo. Como el saldo
+ * nuevo crece o decrece con el saldo anterior, basta calcular los dos extremos con aritmetica
+ * exacta para saber que ninguna cuenta desborda ni, con {@link PoliticaDescubierto#RECHAZAR},
+ * queda en negativo; el bucle principal ya no necesita comprobaciones por cuenta.
+ */
+public final class OperacionMasiva {
+    private static final long[] POTENCIAS_10 = new long[19];
+
+    static {
+        POTENCIAS_10[0] = 1;
+        for (int i = 1; i < POTENCIAS_10.length; i++) {
+            POTENCIAS_10[i] = POTENCIAS_10[i - 1] * 10;
+        }
+    }
+
+    private OperacionMasiva() {
+    }
+
+    /**
+     * Suma a cada saldo {@code saldo * tasa} redondeado a centimos. Con una tasa negativa es un cargo
+     * proporcional. Lanza {@link ArithmeticException} si la tasa tiene mas de 18 decimales, si algun
+     * resultado no cabe en un {@code long} o si el redondeo es {@link RoundingMode#UNNECESSARY} y hace
+     * falta redondear; en ese caso no se modifica ningun saldo.
+     */
+    public static ResultadoOperacion aplicarTasa(long[] centimos, BigDecimal tasa, RoundingMode redondeo,
+                                                 PoliticaDescubierto politica) {
+        BigDecimal fraccion = tasa.scale() < 0 ? tasa.setScale(0) : tasa;
+        if (fraccion.scale() >= POTENCIAS_10.length) {
+            throw new ArithmeticException("La tasa tiene demasiados decimales: " + tasa);
+        }
+        long numerador = fraccion.unscaledValue().longValueExact();
+        long divisor = POTENCIAS_10[fraccion.scale()];
+        if (centimos.length == 0) {
+            return ResultadoOperacion.ACEPTADA;
+        }
+
+        long minimo = centimos[0];
+        long maximo = centimos[0];
+        for (long saldo : centimos) {
+            minimo = Math.min(minimo, saldo);
+            maximo = Math.max(maximo, saldo);
+        }
+        long nuevoMinimo = Math.addExact(minimo, dividir(Math.multiplyExact(minimo, numerador), divisor, redondeo));
+        long nuevoMaximo = Math.addExact(maximo, dividir(Math.multiplyExact(maximo, numerador), divisor, redondeo));
+        if (politica == PoliticaDescubierto.RECHAZAR && Math.min(nuevoMinimo, nuevoMaximo) < 0) {
+            return ResultadoOperacion.SALDO_INSUFICIENTE;
+        }
+        if (redondeo == RoundingMode.UNNECESSARY) {
+            // Se comprueba todo antes de escribir para no dejar el array a medias
+            for (long saldo : centimos) {
+                dividir(saldo * numerador, divisor, redondeo);
+            }
+        }
+
+        boolean limitar = politica == PoliticaDescubierto.LIMITAR_A_CERO;
+        for (int i = 0; i < centimos.length; i++) {
+            long saldo = centimos[i];
+            long nuevo = saldo + dividir(saldo * numerador, divisor, redondeo);
+            centimos[i] = limitar ? Math.max(nuevo, Math.min(saldo, 0)) : nuevo;
+        }
+        return ResultadoOperacion.ACEPTADA;
+    }
+
+    /**
+     * Resta la misma comision fija a cada saldo.
+     */
+    public static ResultadoOperacion aplicarComision(long[] centimos, long comision, PoliticaDescubierto politica) {
+        if (comision < 0) {
+            throw new IllegalArgumentException("La comision no puede ser negativa");
+        }
+        if (centimos.length == 0) {
+            return ResultadoOperacion.ACEPTADA;
+        }
+        long minimo = centimos[0];
+        for (long saldo : centimos) {
+            minimo = Math.min(minimo, saldo);
+        }
+        long nuevoMinimo = Math.subtractExact(minimo, comision);
+        if (politica == PoliticaDescubierto.RECHAZAR && nuevoMinimo < 0) {
+            return ResultadoOperacion.SALDO_INSUFICIENTE;
+        }
+
+        boolean limitar = politica == PoliticaDescubierto.LIMITAR_A_CERO;
+        for (int i = 0; i < centimos.length; i++) {
+            long saldo = centimos[i];
+            long nuevo = saldo - comision;
+            centimos[i] = limitar ? Math.max(nuevo, Math.min(saldo, 0)) : nuevo;
+        }
+        return ResultadoOperacion.ACEPTADA;
+    }
+
+    // Division entera con el mismo criterio de redondeo que BigDecimal
+    static long dividir(long dividendo, long divisor, RoundingMode redondeo) {
+        long cociente = dividendo / divisor;
+        long resto = dividendo - cociente * divisor;
+        if (resto == 0) {
+            return cociente;
+        }
+        int signo = dividendo < 0 ? -1 : 1;
+        // resto < divisor <= 10^18, el doble cabe en un long
+        long doble = Math.abs(resto) * 2;
+        boolean alejarDeCero = switch (redondeo) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> signo > 0;
+            case FLOOR -> signo < 0;
+            case HALF_UP -> doble >= divisor;
+            case HALF_DOWN -> doble > divisor;
+            case HALF_EVEN -> doble > divisor || (doble == divisor && (cociente & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("La tasa necesita redondeo");
+        };
+        return alejarDeCero ? cociente + signo : cociente;
+    }
+}
@@ -0,0 +1,19 @@
+package org.ivan.junit5app.ejemplo.models;
+
+/**
+ * Que hacer en una operacion masiva cuando una cuenta quedaria con saldo negativo.
+ */
+public enum PoliticaDescubierto {
+    /**
+     * Si alguna cuenta quedaria en negativo no se modifica ninguna.
+     */
+    RECHAZAR,
+    /**
+     * El cargo se reduce para que la cuenta quede en cero; si ya estaba en negativo se queda igual.
+     */
+    LIMITAR_A_CERO,
+    /**
+     * Se aplica el cargo completo aunque la cuenta quede en negativo.
+     */
+    PERMITIR
+}
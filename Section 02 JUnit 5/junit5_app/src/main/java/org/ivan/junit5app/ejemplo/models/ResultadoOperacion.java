@@ -0,0 +1,10 @@
+package org.ivan.junit5app.ejemplo.models;
+
+/**
+ * Resultado de {@link Cuenta#tryDebito} y {@link Banco#tryTransferir}, que no lanzan
+ * excepcion cuando falta saldo.
+ */
+public enum ResultadoOperacion {
+    ACEPTADA,
+    SALDO_INSUFICIENTE
+}
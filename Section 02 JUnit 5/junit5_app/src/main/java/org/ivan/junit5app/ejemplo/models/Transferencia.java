@@ -0,0 +1,27 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import java.math.BigDecimal;
+
+public class Transferencia {
+    private final Cuenta origen;
+    private final Cuenta destino;
+    private final BigDecimal monto;
+
+    public Transferencia(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        this.origen = origen;
+        this.destino = destino;
+        this.monto = monto;
+    }
+
+    public Cuenta getOrigen() {
+        return origen;
+    }
+
+    public Cuenta getDestino() {
+        return destino;
+    }
+
+    public BigDecimal getMonto() {
+        return monto;
+    }
+}
@@ -0,0 +1,150 @@
+package org.ivan.junit5app.ejemplo.persistencia;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copia binaria de un banco completo (nombre, cuentas y saldos) escrita y leida con {@link FileChannel}.
+ * <pre>
+ * cabecera: int marca | int version | long numero de cuentas | nombre del banco
+ * cuenta:   nombre | byte escala | long saldo sin escala
+ * nombre:   short longitud en bytes UTF-8 (-1 si es null) | bytes
+ * </pre>
+ * Una cuenta sin saldo se guarda con escala {@value #ESCALA_NULA} y saldo 0; esa escala no se
+ * admite para un saldo real.
+ * Al importar, los saldos se crean con {@link BigDecimal#valueOf(long, int)}, sin parsear texto,
+ * y las cuentas se cargan de una vez con {@link Banco#setCuentas(List)}.
+ */
+public class CopiaBanco {
+    private static final int MARCA = 0x424E434F;
+    private static final int VERSION = 1;
+    private static final int TAMANIO_BUFFER = 1024 * 1024;
+    private static final byte ESCALA_NULA = Byte.MIN_VALUE;
+    // Lo maximo que ocupa una cuenta: nombre mas largo, escala y saldo
+    private static final int MAXIMO_CUENTA = 2 + Short.MAX_VALUE + 1 + 8;
+
+    private CopiaBanco() {
+    }
+
+    public static void exportar(Banco banco, Path archivo) throws IOException {
+        List<Cuenta> cuentas = banco.getCuentas();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BUFFER);
+            buffer.putInt(MARCA).putInt(VERSION).putLong(cuentas.size());
+            escribirNombre(buffer, banco.getNombre());
+
+            for (Cuenta cuenta : cuentas) {
+                if (buffer.remaining() < MAXIMO_CUENTA) {
+                    vaciar(canal, buffer);
+                }
+                BigDecimal saldo = cuenta.getSaldo();
+                if (saldo != null && (saldo.scale() <= ESCALA_NULA || saldo.scale() > Byte.MAX_VALUE)) {
+                    throw new ArithmeticException("Escala fuera de rango en la cuenta " + cuenta.getNombre());
+                }
+                escribirNombre(buffer, cuenta.getNombre());
+                if (saldo == null) {
+                    buffer.put(ESCALA_NULA);
+                    buffer.putLong(0L);
+                } else {
+                    buffer.put((byte) saldo.scale());
+                    buffer.putLong(saldo.unscaledValue().longValueExact());
+                }
+            }
+            vaciar(canal, buffer);
+        }
+    }
+
+    public static Banco importar(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BUFFER);
+            buffer.flip();
+            asegurar(canal, buffer, 16 + 2 + Short.MAX_VALUE);
+            if (buffer.getInt() != MARCA) {
+                throw new IOException("El archivo no es una copia de banco");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Version de copia no soportada: " + version);
+            }
+            long numeroCuentas = buffer.getLong();
+            if (numeroCuentas < 0 || numeroCuentas > Integer.MAX_VALUE) {
+                throw new IOException("Numero de cuentas incorrecto: " + numeroCuentas);
+            }
+
+            Banco banco = new Banco();
+            banco.setNombre(leerNombre(buffer));
+            List<Cuenta> cuentas = new ArrayList<>((int) numeroCuentas);
+            for (long i = 0; i < numeroCuentas; i++) {
+                asegurar(canal, buffer, MAXIMO_CUENTA);
+                String nombre = leerNombre(buffer);
+                int escala = buffer.get();
+                long noEscalado = buffer.getLong();
+                BigDecimal saldo = escala == ESCALA_NULA ? null : BigDecimal.valueOf(noEscalado, escala);
+                cuentas.add(new Cuenta(nombre, saldo));
+            }
+            banco.setCuentas(cuentas);
+            return banco;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("La copia del banco esta incompleta: " + archivo);
+        }
+    }
+
+    private static void escribirNombre(ByteBuffer buffer, String nombre) {
+        if (nombre == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Nombre demasiado largo para la copia: " + nombre.substring(0, 32) + "...");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String leerNombre(ByteBuffer buffer) {
+        int longitud = buffer.getShort();
+        if (longitud < 0) {
+            return null;
+        }
+        if (longitud > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String nombre = new String(buffer.array(), buffer.position(), longitud, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + longitud);
+        return nombre;
+    }
+
+    private static void vaciar(FileChannel canal, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Deja al menos "necesarios" bytes en el buffer, o todo lo que quede del archivo si es menos
+    private static void asegurar(FileChannel canal, ByteBuffer buffer, int necesarios) throws IOException {
+        if (buffer.remaining() >= necesarios) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < necesarios && canal.read(buffer) >= 0) {
+            // se sigue leyendo hasta tener suficiente o llegar al final
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,256 @@
+package org.ivan.junit5app.ejemplo.persistencia;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.Transferencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de transferencias en un archivo mapeado en memoria. Cada transferencia se guarda como un
+ * registro binario de {@value #TAMANIO_REGISTRO} bytes:
+ * <pre>
+ * int marca | int origen | int destino | int escala | long monto sin escala | long crc32c
+ * </pre>
+ * donde origen y destino son la posicion de la cuenta en {@link Banco#getCuentas()}.
+ * <p>
+ * Escribir solo copia en la pagina mapeada; el sistema operativo la lleva a disco cuando quiere.
+ * Para tener durabilidad se llama a {@link #flush()}, o se indica cada cuantos registros hacerlo
+ * en el constructor, asi un flush cubre un grupo de escrituras en lugar de una.
+ * <p>
+ * Antes de tocar los saldos, {@link Banco} llama a {@link #reservar(BigDecimal)}: ahi se comprueba
+ * que el monto cabe en el registro y se mapea el sitio necesario, que es lo unico que puede fallar.
+ * Asi una transferencia que no se puede registrar tampoco se aplica.
+ * <p>
+ * Al abrir, el diario termina en el primer registro invalido y el archivo se trunca ahi. Tras una
+ * caida las paginas pueden haber llegado a disco en cualquier orden, y detras de un hueco puede
+ * haber registros validos que nunca se confirmaron; si no se borraran, las escrituras nuevas solo
+ * taparian una parte y una apertura posterior los volveria a dar por buenos.
+ */
+public class DiarioTransferencias implements Closeable {
+    public static final int TAMANIO_REGISTRO = 32;
+    private static final int MARCA = 0x5452414E;
+    private static final int TAMANIO_REGION_POR_DEFECTO = 64 * 1024 * 1024;
+
+    private final FileChannel canal;
+    private final int tamanioRegion;
+    private final int registrosPorFlush;
+    private final CRC32C crc = new CRC32C();
+
+    private MappedByteBuffer region;
+    private long inicioRegion;
+    private long finRegion;
+    // Bytes reservados detras de posicion para transferencias que aun no se han registrado
+    private long reservado;
+    private long posicion;
+    private long posicionFlush;
+    private int pendientes;
+
+    public DiarioTransferencias(Path archivo) throws IOException {
+        this(archivo, TAMANIO_REGION_POR_DEFECTO, 0);
+    }
+
+    /**
+     * @param tamanioRegion     bytes que se mapean de cada vez, multiplo de {@value #TAMANIO_REGISTRO}
+     * @param registrosPorFlush cada cuantos registros se hace flush automatico; 0 para hacerlo solo a mano
+     */
+    public DiarioTransferencias(Path archivo, int tamanioRegion, int registrosPorFlush) throws IOException {
+        if (tamanioRegion <= 0 || tamanioRegion % TAMANIO_REGISTRO != 0) {
+            throw new IllegalArgumentException("El tamanio de region debe ser multiplo de " + TAMANIO_REGISTRO);
+        }
+        if (registrosPorFlush < 0) {
+            throw new IllegalArgumentException("Los registros por flush no pueden ser negativos");
+        }
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.tamanioRegion = tamanioRegion;
+        this.registrosPorFlush = registrosPorFlush;
+        this.posicion = buscarFinal();
+        descartarCola(posicion);
+        this.posicionFlush = posicion;
+        mapearRegion(posicion - posicion % tamanioRegion, tamanioRegion);
+    }
+
+    /**
+     * Comprueba que se puede registrar una transferencia de {@code monto} y le reserva sitio, asi el
+     * {@link #registrar} que la sigue no falla. Si al final la transferencia no se registra, por
+     * ejemplo por falta de saldo, hay que devolver el sitio con {@link #liberar(int)}.
+     *
+     * @throws ArithmeticException si el monto sin escala no cabe en un {@code long}
+     */
+    public synchronized void reservar(BigDecimal monto) {
+        noEscalado(monto);
+        reservarRegistros(1);
+    }
+
+    /**
+     * Igual que {@link #reservar(BigDecimal)} para todas las transferencias de un lote.
+     */
+    public synchronized void reservar(List<Transferencia> transferencias) {
+        for (Transferencia transferencia : transferencias) {
+            noEscalado(transferencia.getMonto());
+        }
+        reservarRegistros(transferencias.size());
+    }
+
+    /**
+     * Devuelve el sitio de {@code registros} transferencias reservadas que no se van a registrar.
+     */
+    public synchronized void liberar(int registros) {
+        reservado -= (long) registros * TAMANIO_REGISTRO;
+    }
+
+    /**
+     * Anade una transferencia al diario. Lo llama {@link Banco} con los locks de las dos cuentas
+     * tomados, asi el orden del diario respeta el orden en que se aplicaron sobre cada cuenta.
+     * Si hay sitio reservado con {@link #reservar} lo usa y solo puede fallar el flush automatico:
+     * en ese caso la transferencia ya esta en el diario, pero aun no en disco.
+     */
+    public synchronized void registrar(int origen, int destino, BigDecimal monto) {
+        long noEscalado = noEscalado(monto);
+        if (reservado >= TAMANIO_REGISTRO) {
+            reservado -= TAMANIO_REGISTRO;
+        } else {
+            asegurarEspacio(reservado + TAMANIO_REGISTRO);
+        }
+        int desplazamiento = (int) (posicion - inicioRegion);
+        region.putInt(desplazamiento, MARCA);
+        region.putInt(desplazamiento + 4, origen);
+        region.putInt(desplazamiento + 8, destino);
+        region.putInt(desplazamiento + 12, monto.scale());
+        region.putLong(desplazamiento + 16, noEscalado);
+        region.putLong(desplazamiento + 24, crc(region, desplazamiento));
+        posicion += TAMANIO_REGISTRO;
+
+        if (registrosPorFlush > 0 && ++pendientes >= registrosPorFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Lleva a disco todo lo escrito desde el ultimo flush.
+     */
+    public synchronized void flush() {
+        if (posicion > posicionFlush) {
+            int desde = (int) Math.max(0, posicionFlush - inicioRegion);
+            region.force(desde, (int) (posicion - inicioRegion) - desde);
+            posicionFlush = posicion;
+        }
+        pendientes = 0;
+    }
+
+    /**
+     * Vuelve a aplicar todas las transferencias del diario sobre {@code banco}, que debe tener las
+     * mismas cuentas y en el mismo orden que cuando se escribio. No se comprueba el saldo en cada paso:
+     * el diario solo contiene transferencias que ya se aceptaron, y en un lote una cuenta puede
+     * quedar en negativo de forma transitoria.
+     *
+     * @return el numero de transferencias aplicadas
+     */
+    public synchronized long reproducir(Banco banco) throws IOException {
+        List<Cuenta> cuentas = banco.getCuentas();
+        long registros = 0;
+        for (long inicio = 0; inicio < posicion; inicio += tamanioRegion) {
+            int longitud = (int) Math.min(tamanioRegion, posicion - inicio);
+            MappedByteBuffer lectura = canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+            for (int desplazamiento = 0; desplazamiento < longitud; desplazamiento += TAMANIO_REGISTRO) {
+                BigDecimal monto = BigDecimal.valueOf(lectura.getLong(desplazamiento + 16), lectura.getInt(desplazamiento + 12));
+                Cuenta origen = cuentas.get(lectura.getInt(desplazamiento + 4));
+                Cuenta destino = cuentas.get(lectura.getInt(desplazamiento + 8));
+                origen.setSaldo(origen.getSaldo().subtract(monto));
+                destino.setSaldo(destino.getSaldo().add(monto));
+                registros++;
+            }
+        }
+        return registros;
+    }
+
+    /**
+     * @return el numero de transferencias validas que hay en el diario
+     */
+    public synchronized long getRegistros() {
+        return posicion / TAMANIO_REGISTRO;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        region = null;
+        canal.close();
+    }
+
+    // Recorre el archivo hasta el primer registro sin marca o con crc incorrecto (zona sin escribir o escritura a medias)
+    private long buscarFinal() throws IOException {
+        long tamanio = canal.size();
+        long fin = 0;
+        for (long inicio = 0; inicio < tamanio; inicio += tamanioRegion) {
+            int longitud = (int) Math.min(tamanioRegion, tamanio - inicio);
+            MappedByteBuffer lectura = canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+            for (int desplazamiento = 0; desplazamiento + TAMANIO_REGISTRO <= longitud; desplazamiento += TAMANIO_REGISTRO) {
+                if (lectura.getInt(desplazamiento) != MARCA
+                        || lectura.getLong(desplazamiento + 24) != crc(lectura, desplazamiento)) {
+                    return fin;
+                }
+                fin += TAMANIO_REGISTRO;
+            }
+        }
+        return fin;
+    }
+
+    private void descartarCola(long fin) throws IOException {
+        if (canal.size() > fin) {
+            canal.truncate(fin);
+            canal.force(true);
+        }
+    }
+
+    private static long noEscalado(BigDecimal monto) {
+        return monto.unscaledValue().longValueExact();
+    }
+
+    private void reservarRegistros(int registros) {
+        long bytes = (long) registros * TAMANIO_REGISTRO;
+        asegurarEspacio(reservado + bytes);
+        reservado += bytes;
+    }
+
+    // Deja mapeados al menos los bytes pedidos desde posicion; un lote grande puede necesitar una region mayor
+    private void asegurarEspacio(long bytes) {
+        if (posicion + bytes > finRegion) {
+            long longitud = Math.max(tamanioRegion, bytes);
+            if (longitud > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Demasiadas transferencias para registrarlas de una vez");
+            }
+            flush();
+            mapearRegion(posicion, (int) longitud);
+        }
+    }
+
+    private void mapearRegion(long inicio, int longitud) {
+        try {
+            region = canal.map(FileChannel.MapMode.READ_WRITE, inicio, longitud);
+            inicioRegion = inicio;
+            finRegion = inicio + longitud;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Se reutiliza el mismo CRC32C y se mueven position/limit para no crear objetos en cada registro
+    private long crc(ByteBuffer buffer, int desplazamiento) {
+        crc.reset();
+        buffer.limit(desplazamiento + TAMANIO_REGISTRO - 8).position(desplazamiento);
+        crc.update(buffer);
+        buffer.clear();
+        return crc.getValue();
+    }
+}
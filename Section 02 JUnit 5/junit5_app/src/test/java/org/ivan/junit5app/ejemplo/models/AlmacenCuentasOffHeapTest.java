@@ -0,0 +1,138 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+import org.junit.jupiter.api.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("almacen")
+class AlmacenCuentasOffHeapTest {
+
+    AlmacenCuentasOffHeap almacen;
+
+    @BeforeEach
+    void initMethodTest() {
+        almacen = new AlmacenCuentasOffHeap();
+    }
+
+    @Test
+    @DisplayName("Test para comprobar nombres, saldos y busqueda con varios bloques")
+    void testAgregarYBuscar() {
+        // Mas de un bloque de cuentas y varias ampliaciones de la tabla hash
+        int numeroCuentas = 150_000;
+        for (int i = 0; i < numeroCuentas; i++) {
+            assertEquals(i, almacen.agregar("cuenta-" + i, i));
+        }
+
+        assertEquals(numeroCuentas, almacen.size());
+        assertEquals("cuenta-70000", almacen.getNombre(70_000));
+        assertEquals(70_000L, almacen.getCentimos(70_000));
+        assertEquals(123_456, almacen.buscar("cuenta-123456"));
+        assertEquals(-1, almacen.buscar("cuenta-" + numeroCuentas));
+        assertEquals(-1, almacen.buscar(null));
+        assertTrue(almacen.getMemoriaOffHeap() > numeroCuentas * 20L);
+    }
+
+    @Test
+    @DisplayName("Test para comprobar nombres repetidos, nulos y con acentos")
+    void testNombresEspeciales() {
+        int ivan = almacen.agregar("Iván", 100L);
+        almacen.agregar("Iván", 200L);
+        int sinNombre = almacen.agregar(null, 300L);
+
+        assertEquals(ivan, almacen.buscar("Iván"));
+        assertEquals(-1, almacen.buscar("Ivan"));
+        assertNull(almacen.getNombre(sinNombre));
+        assertThrows(IndexOutOfBoundsException.class, () -> almacen.getCentimos(3));
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que las vistas funcionan como cuentas del banco")
+    void testVistasEnBanco() {
+        int ivan = almacen.agregar("Ivan", 100_000L);
+        int juan = almacen.agregar("Juan", 50_000L);
+        Banco banco = new Banco();
+
+        banco.transferir(almacen.vista(ivan), almacen.vista(juan), new BigDecimal("100.00"));
+
+        CuentaVista vista = almacen.vista(ivan);
+        assertEquals(new BigDecimal("900.00"), vista.getSaldo());
+        assertEquals(60_000L, almacen.getCentimos(juan));
+        assertEquals("Ivan", vista.getNombre());
+        assertEquals(vista, almacen.vista(ivan));
+        assertEquals(vista.claveBloqueo(), almacen.vista(ivan).claveBloqueo());
+        assertThrows(DineroInsuficienteException.class, () -> vista.debito(90_001L));
+        assertThrows(UnsupportedOperationException.class, () -> vista.setNombre("Pepe"));
+        assertEquals(2, almacen.comoLista().size());
+        assertEquals("Juan", almacen.comoLista().get(juan).getNombre());
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que las vistas se comparan por nombre y saldo")
+    void testVistasIgualesPorNombreYSaldo() {
+        int ivan = almacen.agregar("Ivan", 100_000L);
+        int juan = almacen.agregar("Juan", 100_000L);
+        int otroIvan = almacen.agregar("Ivan", 100_000L);
+
+        assertNotEquals(almacen.vista(ivan), almacen.vista(juan));
+        assertNotEquals(almacen.vista(ivan).hashCode(), almacen.vista(juan).hashCode());
+        assertEquals(almacen.vista(ivan), almacen.vista(otroIvan));
+        assertEquals(1, almacen.comoLista().indexOf(almacen.vista(juan)));
+    }
+
+    @Test
+    @DisplayName("Test para comprobar un banco que usa la lista del almacen como sus cuentas")
+    void testListaEnBanco() {
+        almacen.agregar("Ivan", 100_000L);
+        almacen.agregar("Juan", 50_000L);
+        List<Cuenta> lista = almacen.comoLista();
+        Banco banco = new Banco();
+        banco.setCuentas(lista);
+
+        // Siempre la misma vista: el banco y la posicion que guarda setCuentas no se pierden
+        assertSame(lista.get(0), lista.get(0));
+        assertSame(banco, lista.get(1).getBanco());
+        assertSame(lista.get(0), banco.findCuenta("Ivan").orElseThrow());
+
+        InstantaneaBanco antes = banco.instantanea();
+        banco.transferir(lista.get(0), lista.get(1), new BigDecimal("100.00"));
+        lista.get(1).credito(new BigDecimal("10.00"));
+
+        assertEquals(new BigDecimal("900.00"), lista.get(0).getSaldo());
+        assertEquals(61_000L, almacen.getCentimos(1));
+        assertEquals(new BigDecimal("1510.00"), banco.getTotal());
+        assertEquals(new BigDecimal("1000.00"), antes.getSaldo(lista.get(0)));
+        assertEquals(new BigDecimal("500.00"), antes.getSaldo(lista.get(1)));
+        antes.close();
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que un banco sobre el almacen solo crea las vistas que usa")
+    void testBancoSinVistasSinUsar() {
+        for (int i = 0; i < 1000; i++) {
+            almacen.agregar("cuenta-" + i, 1_000L);
+        }
+        Banco banco = new Banco();
+        banco.setCuentas(almacen.comoLista());
+
+        assertEquals(new BigDecimal("10000.00"), banco.getTotal());
+        assertEquals(0, almacen.vistasCreadas());
+
+        Cuenta origen = banco.findCuenta("cuenta-10").orElseThrow();
+        Cuenta destino = banco.findCuenta("cuenta-20").orElseThrow();
+        banco.transferir(origen, destino, new BigDecimal("5.00"));
+        assertEquals(20, destino.getPosicion());
+        assertEquals(2, almacen.vistasCreadas());
+        assertEquals(0, banco.getTotal().compareTo(banco.recalcularTotal()));
+        assertEquals(500L, almacen.getCentimos(10));
+
+        // Al cambiar de cuentas el almacen deja de ser del banco
+        banco.setCuentas(new ArrayList<>());
+        assertNull(origen.getBanco());
+        assertEquals(-1, origen.getPosicion());
+    }
+}
@@ -0,0 +1,436 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.ivan.junit5app.ejemplo.exception.DineroInsuficienteException;
+import org.junit.jupiter.api.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BancoTest {
+
+    Banco banco;
+
+    @BeforeEach
+    void initMethodTest() {
+        this.banco = new Banco();
+        banco.setNombre("Banco de Prueba");
+    }
+
+    @Tag("banco")
+    @Tag("concurrencia")
+    @Nested
+    @DisplayName("Transferencias concurrentes con locks por stripe")
+    class TransferenciasConcurrentesTest {
+
+        @Test
+        @DisplayName("Test para comprobar que no se pierden actualizaciones entre hilos")
+        void testTransferenciasCruzadasSinPerdidas() throws Exception {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("100000.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("100000.00"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            int hilos = 4;
+            int transferenciasPorHilo = 10_000;
+            ExecutorService executor = Executors.newFixedThreadPool(hilos);
+            CountDownLatch inicio = new CountDownLatch(1);
+            List<Future<?>> resultados = new ArrayList<>();
+
+            // La mitad de los hilos transfiere en un sentido y la otra mitad en el contrario
+            for (int i = 0; i < hilos; i++) {
+                boolean ida = i % 2 == 0;
+                resultados.add(executor.submit(() -> {
+                    inicio.await();
+                    for (int j = 0; j < transferenciasPorHilo; j++) {
+                        if (ida) {
+                            banco.transferir(cuenta1, cuenta2, BigDecimal.ONE);
+                        } else {
+                            banco.transferir(cuenta2, cuenta1, BigDecimal.ONE);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            inicio.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertEquals(new BigDecimal("100000.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("100000.00"), cuenta2.getSaldo());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar que un unico stripe sigue funcionando")
+        void testUnSoloStripe() {
+            Banco bancoUnStripe = new Banco(1);
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("500.00"));
+
+            bancoUnStripe.transferir(cuenta1, cuenta2, new BigDecimal("100.00"));
+
+            assertEquals(new BigDecimal("900.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("600.00"), cuenta2.getSaldo());
+        }
+
+        @Test
+        void testStripesInvalidos() {
+            assertThrows(IllegalArgumentException.class, () -> new Banco(0));
+        }
+    }
+
+    @Tag("banco")
+    @Nested
+    @DisplayName("Busqueda de cuentas por nombre")
+    class FindCuentaTest {
+
+        @Test
+        @DisplayName("Test para comprobar el indice con addCuenta y setCuentas")
+        void testFindCuenta() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("500.00"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertSame(cuenta1, banco.findCuenta("Ivan").orElseThrow());
+            assertSame(cuenta2, banco.findCuenta("Juan").orElseThrow());
+            assertTrue(banco.findCuenta("Pepe").isEmpty());
+            assertTrue(banco.findCuenta(null).isEmpty());
+
+            Cuenta cuenta3 = new Cuenta("Pepe", new BigDecimal("10.00"));
+            banco.setCuentas(new ArrayList<>(List.of(cuenta3)));
+
+            assertSame(cuenta3, banco.findCuenta("Pepe").orElseThrow());
+            assertTrue(banco.findCuenta("Ivan").isEmpty());
+            assertSame(banco, cuenta3.getBanco());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar que el indice sigue a los cambios de nombre")
+        void testRenombrarCuenta() {
+            Cuenta cuenta = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            banco.addCuenta(cuenta);
+
+            cuenta.setNombre("Andres");
+
+            assertTrue(banco.findCuenta("Ivan").isEmpty());
+            assertSame(cuenta, banco.findCuenta("Andres").orElseThrow());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar que con nombres repetidos se devuelve la primera cuenta")
+        void testNombreRepetido() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Ivan", new BigDecimal("500.00"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertSame(cuenta1, banco.findCuenta("Ivan").orElseThrow());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar el indice al renombrar una de dos cuentas con el mismo nombre")
+        void testRenombrarNombreRepetido() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Ivan", new BigDecimal("500.00"));
+            Cuenta cuenta3 = new Cuenta("Andres", new BigDecimal("200.00"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            banco.addCuenta(cuenta3);
+
+            // La otra cuenta sigue llamandose Ivan
+            cuenta1.setNombre("Pedro");
+            assertSame(cuenta2, banco.findCuenta("Ivan").orElseThrow());
+            assertSame(cuenta1, banco.findCuenta("Pedro").orElseThrow());
+
+            // Al pasar a un nombre existente gana la que se agrego antes
+            cuenta3.setNombre("Pedro");
+            assertSame(cuenta1, banco.findCuenta("Pedro").orElseThrow());
+            assertTrue(banco.findCuenta("Andres").isEmpty());
+            cuenta1.setNombre("Ivan");
+            assertSame(cuenta1, banco.findCuenta("Ivan").orElseThrow());
+            assertSame(cuenta3, banco.findCuenta("Pedro").orElseThrow());
+        }
+    }
+
+    @Tag("banco")
+    @Nested
+    @DisplayName("Transferencias por lotes con neteo por cuenta")
+    class TransferirLoteTest {
+
+        @Test
+        @DisplayName("Test para comprobar que el lote aplica el neto de cada cuenta")
+        void testTransferirLote() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("100.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("0.00"));
+            Cuenta cuenta3 = new Cuenta("Pepe", new BigDecimal("50.00"));
+
+            // Juan no tiene saldo para la segunda transferencia por separado, pero si con el neto del lote
+            banco.transferirLote(List.of(
+                    new Transferencia(cuenta2, cuenta3, new BigDecimal("80.00")),
+                    new Transferencia(cuenta1, cuenta2, new BigDecimal("100.00")),
+                    new Transferencia(cuenta3, cuenta1, new BigDecimal("30.00"))));
+
+            assertEquals(new BigDecimal("30.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("20.00"), cuenta2.getSaldo());
+            assertEquals(new BigDecimal("100.00"), cuenta3.getSaldo());
+        }
+
+        @Test
+        @Tag("error")
+        @DisplayName("Test para comprobar que un lote sin saldo no modifica ninguna cuenta")
+        void testTransferirLoteTodoONada() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("100.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("10.00"));
+
+            Exception exception = assertThrows(DineroInsuficienteException.class, () -> banco.transferirLote(List.of(
+                    new Transferencia(cuenta1, cuenta2, new BigDecimal("50.00")),
+                    new Transferencia(cuenta2, cuenta1, new BigDecimal("100.00")))));
+
+            assertEquals("No hay suficiente saldo", exception.getMessage());
+            assertEquals(new BigDecimal("100.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("10.00"), cuenta2.getSaldo());
+        }
+
+        @Test
+        @Tag("error")
+        @DisplayName("Test para comprobar que un lote con tres decimales en centimos no modifica ninguna cuenta")
+        void testTransferirLoteTresDecimales() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("100.00"));
+            CuentaCentimos cuenta2 = new CuentaCentimos("Juan", new BigDecimal("10.00"));
+            Cuenta cuenta3 = new Cuenta("Pepe", new BigDecimal("50.00"));
+            banco.setCuentas(List.of(cuenta1, cuenta2, cuenta3));
+            BigDecimal total = banco.getTotal();
+
+            // La primera transferencia se aplicaria sin problema; la segunda no cabe en centimos
+            assertThrows(ArithmeticException.class, () -> banco.transferirLote(List.of(
+                    new Transferencia(cuenta1, cuenta3, new BigDecimal("20.00")),
+                    new Transferencia(cuenta1, cuenta2, new BigDecimal("0.005")))));
+
+            assertEquals(new BigDecimal("100.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("10.00"), cuenta2.getSaldo());
+            assertEquals(new BigDecimal("50.00"), cuenta3.getSaldo());
+            assertEquals(total, banco.getTotal());
+        }
+
+        @Test
+        void testTransferirLoteVacio() {
+            assertDoesNotThrow(() -> banco.transferirLote(List.of()));
+        }
+    }
+
+    @Tag("banco")
+    @Nested
+    @DisplayName("Total del banco mantenido al dia")
+    class TotalBancoTest {
+
+        @Test
+        @DisplayName("Test para comprobar que el total sigue a todos los movimientos")
+        void testTotal() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.12345"));
+            CuentaCentimos cuenta2 = new CuentaCentimos("Juan", 50_000L);
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            assertEquals(0, new BigDecimal("1500.12345").compareTo(banco.getTotal()));
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("100.00"));
+            cuenta1.credito(new BigDecimal("10.00"));
+            cuenta2.debito(500L);
+            cuenta1.setSaldo(new BigDecimal("1.00"));
+            cuenta2.setSaldo(new BigDecimal("2.00"));
+
+            assertEquals(0, new BigDecimal("3.00").compareTo(banco.getTotal()));
+            assertEquals(0, banco.recalcularTotal().compareTo(banco.getTotal()));
+
+            banco.setCuentas(new ArrayList<>(List.of(new Cuenta("Pepe", new BigDecimal("7.50")))));
+            assertEquals(0, new BigDecimal("7.50").compareTo(banco.getTotal()));
+        }
+
+        @Test
+        @Tag("concurrencia")
+        @DisplayName("Test para comprobar el total con creditos desde varios hilos")
+        void testTotalConcurrente() throws Exception {
+            List<Cuenta> cuentas = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                cuentas.add(i % 2 == 0 ? new Cuenta("cuenta-" + i, BigDecimal.ONE) : new CuentaCentimos("cuenta-" + i, 100L));
+            }
+            banco.setCuentas(cuentas);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int h = 0; h < 4; h++) {
+                int inicio = h;
+                resultados.add(executor.submit(() -> {
+                    // Cada hilo toca cuentas distintas para que solo compitan por el total
+                    for (int i = inicio; i < cuentas.size(); i += 4) {
+                        cuentas.get(i).credito(new BigDecimal("0.01"));
+                    }
+                }));
+            }
+            for (Future<?> resultado : resultados) {
+                resultado.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertEquals(0, new BigDecimal("20200.00").compareTo(banco.getTotal()));
+            assertEquals(0, banco.recalcularTotal().compareTo(banco.getTotal()));
+        }
+    }
+
+    @Tag("banco")
+    @Nested
+    @DisplayName("Transferencias sin excepciones y contadores")
+    class TryTransferirTest {
+
+        @Test
+        @DisplayName("Test para comprobar el resultado y los contadores de tryTransferir")
+        void testTryTransferir() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("100.00"));
+            Cuenta cuenta2 = new CuentaCentimos("Juan", 0L);
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertEquals(ResultadoOperacion.ACEPTADA, banco.tryTransferir(cuenta1, cuenta2, new BigDecimal("60.00")));
+            assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE, banco.tryTransferir(cuenta1, cuenta2, new BigDecimal("60.00")));
+            assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE, banco.tryTransferir(cuenta2, cuenta1, new BigDecimal("60.01")));
+            assertThrows(DineroInsuficienteException.class, () -> banco.transferir(cuenta1, cuenta2, new BigDecimal("40.01")));
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("40.00"));
+
+            assertEquals(BigDecimal.ZERO.setScale(2), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("100.00"), cuenta2.getSaldo());
+            assertEquals(2, banco.getOperacionesAceptadas());
+            assertEquals(3, banco.getOperacionesRechazadas());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar tryDebito en los distintos tipos de cuenta")
+        void testTryDebito() {
+            List<Cuenta> cuentas = List.of(new Cuenta("Ivan", new BigDecimal("10.00")),
+                    new CuentaCentimos("Juan", 1_000L), new CuentaAtomica("Pepe", new BigDecimal("10.00")));
+
+            for (Cuenta cuenta : cuentas) {
+                assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE, cuenta.tryDebito(new BigDecimal("10.01")));
+                assertEquals(ResultadoOperacion.ACEPTADA, cuenta.tryDebito(new BigDecimal("10.00")));
+                assertEquals(0, BigDecimal.ZERO.compareTo(cuenta.getSaldo()), () -> cuenta.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Tag("banco")
+    @Nested
+    @DisplayName("Instantaneas de saldos")
+    class InstantaneaBancoTest {
+
+        @Test
+        @DisplayName("Test para comprobar que la instantanea no ve los cambios posteriores")
+        void testInstantanea() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new CuentaCentimos("Juan", 50_000L);
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            InstantaneaBanco instantanea = banco.instantanea();
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("100.00"));
+            cuenta1.credito(new BigDecimal("10.00"));
+            Cuenta cuenta3 = new Cuenta("Pepe", new BigDecimal("5.00"));
+            banco.addCuenta(cuenta3);
+
+            try (InstantaneaBanco despues = banco.instantanea()) {
+                assertEquals(new BigDecimal("1000.00"), instantanea.getSaldo(cuenta1));
+                assertEquals(new BigDecimal("500.00"), instantanea.getSaldo(cuenta2));
+                assertEquals(2, instantanea.getCuentas().size());
+                assertEquals(0, new BigDecimal("1500.00").compareTo(instantanea.getTotal()));
+                assertThrows(IllegalArgumentException.class, () -> instantanea.getSaldo(cuenta3));
+
+                assertEquals(new BigDecimal("910.00"), despues.getSaldo(cuenta1));
+                assertEquals(new BigDecimal("600.00"), despues.getSaldo(cuenta2));
+                assertEquals(0, banco.getTotal().compareTo(despues.getTotal()));
+                assertTrue(despues.getVersion() > instantanea.getVersion());
+            }
+            instantanea.close();
+            assertThrows(IllegalStateException.class, instantanea::getTotal);
+        }
+
+        @Test
+        @DisplayName("Test para comprobar que no se mueven cuentas de otro banco versionado")
+        void testCuentaDeOtroBanco() {
+            Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("500.00"));
+            Cuenta sinBanco = new Cuenta("Pepe", new BigDecimal("100.00"));
+            Banco otroBanco = new Banco();
+            banco.addCuenta(cuenta1);
+            otroBanco.addCuenta(cuenta2);
+            banco.instantanea().close();
+            otroBanco.instantanea().close();
+
+            // Versionar cuenta2 tomaria los locks de otroBanco con los de banco ya tomados
+            assertThrows(IllegalArgumentException.class, () -> banco.transferir(cuenta1, cuenta2, BigDecimal.TEN));
+            assertThrows(IllegalArgumentException.class, () -> banco.transferirLote(List.of(
+                    new Transferencia(cuenta2, cuenta1, BigDecimal.TEN))));
+            assertEquals(new BigDecimal("1000.00"), cuenta1.getSaldo());
+            assertEquals(new BigDecimal("500.00"), cuenta2.getSaldo());
+
+            // Las cuentas sin banco se siguen pudiendo usar
+            banco.transferir(sinBanco, cuenta1, BigDecimal.TEN);
+            assertEquals(new BigDecimal("1010.00"), cuenta1.getSaldo());
+        }
+
+        @Test
+        @Tag("concurrencia")
+        @DisplayName("Test para comprobar que las instantaneas no ven dinero en vuelo")
+        void testInstantaneasConcurrentes() throws Exception {
+            List<Cuenta> cuentas = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                cuentas.add(new Cuenta("cuenta-" + i, new BigDecimal("1000")));
+            }
+            banco.setCuentas(cuentas);
+            BigDecimal total = new BigDecimal("100000");
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int h = 0; h < 3; h++) {
+                int semilla = h;
+                resultados.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        Cuenta origen = cuentas.get((i * 7 + semilla) % cuentas.size());
+                        Cuenta destino = cuentas.get((i * 13 + semilla * 31 + 1) % cuentas.size());
+                        banco.tryTransferir(origen, destino, BigDecimal.ONE);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> lector = executor.submit(() -> {
+                salida.await();
+                while (!resultados.stream().allMatch(Future::isDone)) {
+                    try (InstantaneaBanco instantanea = banco.instantanea()) {
+                        assertEquals(0, total.compareTo(instantanea.getTotal()));
+                    }
+                }
+                return null;
+            });
+            salida.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get(60, TimeUnit.SECONDS);
+            }
+            lector.get(60, TimeUnit.SECONDS);
+            executor.shutdown();
+
+            try (InstantaneaBanco instantanea = banco.instantanea()) {
+                for (Cuenta cuenta : cuentas) {
+                    assertEquals(cuenta.getSaldo(), instantanea.getSaldo(cuenta));
+                }
+            }
+        }
+    }
+}
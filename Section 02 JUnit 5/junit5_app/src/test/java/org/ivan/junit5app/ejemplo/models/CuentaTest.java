@@ -11,9 +11,15 @@ import org.junit.jupiter.params.provider.ValueSource;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.*;
@@ -127,6 +133,105 @@ class CuentaTest {
     }
 
 
+    @Tag("cuenta")
+    @Nested
+    @DisplayName("Test para la cuenta con saldo en centimos")
+    class CuentaCentimosTest {
+
+        @Test
+        @DisplayName("Test para comprobar debito y credito en centimos")
+        void testDebitoCreditoCentimos() {
+            CuentaCentimos cuentaCentimos = new CuentaCentimos("Ivan", new BigDecimal("1000.00"));
+            cuentaCentimos.debito(10_000L);
+            cuentaCentimos.credito(new BigDecimal("0.50"));
+
+            assertEquals(90_050L, cuentaCentimos.getCentimos());
+            assertEquals("900.50", cuentaCentimos.getSaldo().toString());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar que se comporta como una Cuenta en el Banco")
+        void testTransferirCentimos() {
+            Cuenta cuentaOrigen = new CuentaCentimos("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuentaDestino = new Cuenta("Juan", new BigDecimal("500.00"));
+            Banco banco = new Banco();
+            banco.transferir(cuentaOrigen, cuentaDestino, new BigDecimal("100.00"));
+
+            assertEquals(new BigDecimal("900.00"), cuentaOrigen.getSaldo());
+            assertEquals(new BigDecimal("600.00"), cuentaDestino.getSaldo());
+            assertEquals(new CuentaCentimos("Ivan", 90_000L), cuentaOrigen);
+        }
+
+        @Test
+        @Tag("error")
+        void testErroresCentimos() {
+            CuentaCentimos cuentaCentimos = new CuentaCentimos("Ivan", 100L);
+            CuentaCentimos cuentaLlena = new CuentaCentimos("Juan", Long.MAX_VALUE);
+
+            assertThrows(DineroInsuficienteException.class, () -> cuentaCentimos.debito(101L));
+            assertThrows(ArithmeticException.class, () -> cuentaLlena.credito(1L));
+            assertThrows(ArithmeticException.class, () -> cuentaCentimos.setSaldo(new BigDecimal("1.001")));
+            assertEquals(100L, cuentaCentimos.getCentimos());
+            assertEquals(Long.MAX_VALUE, cuentaLlena.getCentimos());
+        }
+    }
+
+    @Tag("cuenta")
+    @Tag("concurrencia")
+    @Nested
+    @DisplayName("Test para la cuenta atomica sin locks")
+    class CuentaAtomicaTest {
+
+        @Test
+        @DisplayName("Test para comprobar que los debitos concurrentes nunca dejan saldo negativo")
+        void testDebitosConcurrentes() throws Exception {
+            CuentaAtomica cuentaAtomica = new CuentaAtomica("Ivan", new BigDecimal("1000"));
+            AtomicInteger rechazados = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            CountDownLatch inicio = new CountDownLatch(1);
+            List<Future<?>> resultados = new ArrayList<>();
+
+            for (int h = 0; h < 4; h++) {
+                resultados.add(executor.submit(() -> {
+                    inicio.await();
+                    for (int i = 0; i < 500; i++) {
+                        try {
+                            cuentaAtomica.debito(BigDecimal.ONE);
+                        } catch (DineroInsuficienteException e) {
+                            rechazados.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            inicio.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertEquals(0, BigDecimal.ZERO.compareTo(cuentaAtomica.getSaldo()));
+            assertEquals(1000, rechazados.get());
+        }
+
+        @Test
+        @DisplayName("Test para comprobar la cuenta atomica dentro del banco")
+        void testCuentaAtomicaEnBanco() {
+            Banco banco = new Banco();
+            CuentaAtomica cuenta1 = new CuentaAtomica("Ivan", new BigDecimal("1000.00"));
+            Cuenta cuenta2 = new Cuenta("Juan", new BigDecimal("500.00"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("100.00"));
+            cuenta1.credito(new BigDecimal("5.00"));
+
+            assertEquals(new BigDecimal("905.00"), cuenta1.getSaldo());
+            assertEquals(0, new BigDecimal("1505.00").compareTo(banco.getTotal()));
+            assertThrows(DineroInsuficienteException.class, () -> cuenta1.debito(new BigDecimal("905.01")));
+        }
+    }
+
     @Test
     @Tag("cuenta")
     @Tag("error")
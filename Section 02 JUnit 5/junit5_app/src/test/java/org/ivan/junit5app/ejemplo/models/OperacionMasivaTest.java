@@ -0,0 +1,115 @@
+package org.ivan.junit5app.ejemplo.models;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("masiva")
+class OperacionMasivaTest {
+
+    @ParameterizedTest(name = "redondeo {0}")
+    @EnumSource(value = RoundingMode.class, names = "UNNECESSARY", mode = EnumSource.Mode.EXCLUDE)
+    @DisplayName("Test para comprobar que la tasa redondea igual que BigDecimal")
+    void testRedondeoComoBigDecimal(RoundingMode redondeo) {
+        Random random = new Random(42);
+        BigDecimal[] tasas = {new BigDecimal("0.015"), new BigDecimal("-0.0025"), new BigDecimal("0.5"), new BigDecimal("1E+1")};
+        for (BigDecimal tasa : tasas) {
+            long[] centimos = new long[10_000];
+            for (int i = 0; i < centimos.length; i++) {
+                centimos[i] = random.nextInt(2_000_000) - 1_000_000;
+            }
+            long[] esperados = new long[centimos.length];
+            for (int i = 0; i < centimos.length; i++) {
+                BigDecimal saldo = BigDecimal.valueOf(centimos[i]);
+                esperados[i] = saldo.add(saldo.multiply(tasa).setScale(0, redondeo)).longValueExact();
+            }
+
+            assertEquals(ResultadoOperacion.ACEPTADA,
+                    OperacionMasiva.aplicarTasa(centimos, tasa, redondeo, PoliticaDescubierto.PERMITIR));
+            assertArrayEquals(esperados, centimos, () -> "tasa " + tasa);
+        }
+    }
+
+    @Test
+    @DisplayName("Test para comprobar las politicas de descubierto")
+    void testPoliticasDescubierto() {
+        long[] centimos = {1_000, 50, 0, -20};
+        assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE,
+                OperacionMasiva.aplicarComision(centimos, 100, PoliticaDescubierto.RECHAZAR));
+        assertArrayEquals(new long[]{1_000, 50, 0, -20}, centimos);
+
+        assertEquals(ResultadoOperacion.ACEPTADA,
+                OperacionMasiva.aplicarComision(centimos, 100, PoliticaDescubierto.LIMITAR_A_CERO));
+        assertArrayEquals(new long[]{900, 0, 0, -20}, centimos);
+
+        assertEquals(ResultadoOperacion.ACEPTADA,
+                OperacionMasiva.aplicarComision(centimos, 100, PoliticaDescubierto.PERMITIR));
+        assertArrayEquals(new long[]{800, -100, -100, -120}, centimos);
+
+        long[] positivos = {1_000, 10};
+        assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE,
+                OperacionMasiva.aplicarTasa(positivos, new BigDecimal("-1.5"), RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR));
+        assertEquals(ResultadoOperacion.ACEPTADA,
+                OperacionMasiva.aplicarTasa(positivos, new BigDecimal("-1.5"), RoundingMode.HALF_EVEN, PoliticaDescubierto.LIMITAR_A_CERO));
+        assertArrayEquals(new long[]{0, 0}, positivos);
+    }
+
+    @Test
+    @Tag("error")
+    @DisplayName("Test para comprobar que los errores no dejan el array a medias")
+    void testErrores() {
+        long[] centimos = {100, 105, Long.MAX_VALUE / 2};
+        assertThrows(ArithmeticException.class,
+                () -> OperacionMasiva.aplicarTasa(centimos, new BigDecimal("1.5"), RoundingMode.HALF_UP, PoliticaDescubierto.PERMITIR));
+        assertThrows(ArithmeticException.class,
+                () -> OperacionMasiva.aplicarTasa(centimos, new BigDecimal("0.1"), RoundingMode.UNNECESSARY, PoliticaDescubierto.PERMITIR));
+        assertThrows(ArithmeticException.class,
+                () -> OperacionMasiva.aplicarTasa(centimos, new BigDecimal("1E-19"), RoundingMode.HALF_UP, PoliticaDescubierto.PERMITIR));
+        assertThrows(IllegalArgumentException.class,
+                () -> OperacionMasiva.aplicarComision(centimos, -1, PoliticaDescubierto.PERMITIR));
+        assertArrayEquals(new long[]{100, 105, Long.MAX_VALUE / 2}, centimos);
+    }
+
+    @Test
+    @Tag("banco")
+    @DisplayName("Test para comprobar intereses y comisiones sobre todas las cuentas de un banco")
+    void testBanco() {
+        Banco banco = new Banco();
+        Cuenta cuenta1 = new Cuenta("Ivan", new BigDecimal("1000.00"));
+        CuentaCentimos cuenta2 = new CuentaCentimos("Juan", 333L);
+        Cuenta cuenta3 = new CuentaAtomica("Pepe", new BigDecimal("0.50"));
+        banco.setCuentas(new ArrayList<>(List.of(cuenta1, cuenta2, cuenta3)));
+
+        try (InstantaneaBanco antes = banco.instantanea()) {
+            assertEquals(ResultadoOperacion.ACEPTADA,
+                    banco.aplicarTasa(new BigDecimal("0.015"), RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR));
+            assertEquals(new BigDecimal("1015.00"), cuenta1.getSaldo());
+            assertEquals(338L, cuenta2.getCentimos());
+            assertEquals(new BigDecimal("0.51"), cuenta3.getSaldo());
+            assertEquals(new BigDecimal("1000.00"), antes.getSaldo(cuenta1));
+        }
+
+        assertEquals(ResultadoOperacion.SALDO_INSUFICIENTE, banco.aplicarComision(100, PoliticaDescubierto.RECHAZAR));
+        assertEquals(new BigDecimal("0.51"), cuenta3.getSaldo());
+        assertEquals(ResultadoOperacion.ACEPTADA, banco.aplicarComision(100, PoliticaDescubierto.LIMITAR_A_CERO));
+        assertEquals(new BigDecimal("1014.00"), cuenta1.getSaldo());
+        assertEquals(238L, cuenta2.getCentimos());
+        assertEquals(new BigDecimal("0.00"), cuenta3.getSaldo());
+        assertEquals(0, banco.recalcularTotal().compareTo(banco.getTotal()));
+        assertEquals(2, banco.getOperacionesAceptadas());
+        assertEquals(1, banco.getOperacionesRechazadas());
+
+        banco.addCuenta(new Cuenta("Maria", new BigDecimal("1.001")));
+        assertThrows(ArithmeticException.class,
+                () -> banco.aplicarTasa(new BigDecimal("0.01"), RoundingMode.HALF_EVEN, PoliticaDescubierto.PERMITIR));
+        assertEquals(new BigDecimal("1014.00"), cuenta1.getSaldo());
+    }
+}
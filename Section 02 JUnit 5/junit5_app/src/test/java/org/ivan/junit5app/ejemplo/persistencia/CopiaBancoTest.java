@@ -0,0 +1,124 @@
+package org.ivan.junit5app.ejemplo.persistencia;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.CuentaCentimos;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("persistencia")
+class CopiaBancoTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("Test para comprobar que una copia exportada se importa igual")
+    void testExportarImportar() throws IOException {
+        Banco banco = new Banco();
+        banco.setNombre("Banco del Estado");
+        banco.addCuenta(new Cuenta("Ivan", new BigDecimal("1000.12345")));
+        banco.addCuenta(new CuentaCentimos("Juan", 50_000L));
+        banco.addCuenta(new Cuenta("Iñigo", new BigDecimal("-3E+2")));
+        banco.addCuenta(new Cuenta(null, BigDecimal.ZERO));
+        Path archivo = directorio.resolve("banco.copia");
+
+        CopiaBanco.exportar(banco, archivo);
+        Banco importado = CopiaBanco.importar(archivo);
+
+        assertEquals("Banco del Estado", importado.getNombre());
+        assertEquals(4, importado.getCuentas().size());
+        assertEquals(new BigDecimal("1000.12345"), importado.findCuenta("Ivan").orElseThrow().getSaldo());
+        assertEquals(new BigDecimal("500.00"), importado.findCuenta("Juan").orElseThrow().getSaldo());
+        assertEquals(new BigDecimal("-3E+2"), importado.findCuenta("Iñigo").orElseThrow().getSaldo());
+        assertNull(importado.getCuentas().get(3).getNombre());
+        assertSame(importado, importado.getCuentas().get(0).getBanco());
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que una cuenta sin saldo se exporta e importa sin saldo")
+    void testSaldoNulo() throws IOException {
+        Banco banco = new Banco();
+        banco.addCuenta(new Cuenta("Ivan", null));
+        banco.addCuenta(new Cuenta("Juan", new BigDecimal("500.00")));
+        Path archivo = directorio.resolve("banco.copia");
+
+        CopiaBanco.exportar(banco, archivo);
+        Banco importado = CopiaBanco.importar(archivo);
+
+        assertNull(importado.findCuenta("Ivan").orElseThrow().getSaldo());
+        assertEquals(new BigDecimal("500.00"), importado.findCuenta("Juan").orElseThrow().getSaldo());
+        assertEquals(new BigDecimal("500.00"), importado.getTotal());
+    }
+
+    @Test
+    @Tag("error")
+    void testCopiaIncompleta() throws IOException {
+        Banco banco = new Banco();
+        banco.addCuenta(new Cuenta("Ivan", new BigDecimal("1000.00")));
+        banco.addCuenta(new Cuenta("Juan", new BigDecimal("500.00")));
+        Path archivo = directorio.resolve("banco.copia");
+        CopiaBanco.exportar(banco, archivo);
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.truncate(Files.size(archivo) - 4);
+        }
+
+        assertThrows(EOFException.class, () -> CopiaBanco.importar(archivo));
+    }
+
+    @Nested
+    @Tag("rendimiento")
+    class TiempoArranqueTest {
+
+        @Test
+        @DisplayName("Tiempo de importacion con 100.000 cuentas")
+        void testTiempoImportar100Mil(TestReporter testReporter) throws IOException {
+            medirImportacion(100_000, testReporter);
+        }
+
+        // Necesita varios GB de heap, se lanza con -DENV=perf
+        @Test
+        @EnabledIfSystemProperty(named = "ENV", matches = "perf")
+        @DisplayName("Tiempo de importacion con 10 millones de cuentas")
+        void testTiempoImportar10Millones(TestReporter testReporter) throws IOException {
+            medirImportacion(10_000_000, testReporter);
+        }
+
+        private void medirImportacion(int numeroCuentas, TestReporter testReporter) throws IOException {
+            List<Cuenta> cuentas = new ArrayList<>(numeroCuentas);
+            for (int i = 0; i < numeroCuentas; i++) {
+                cuentas.add(new CuentaCentimos("cuenta-" + i, i));
+            }
+            Banco banco = new Banco();
+            banco.setCuentas(cuentas);
+            Path archivo = directorio.resolve("banco-" + numeroCuentas + ".copia");
+            CopiaBanco.exportar(banco, archivo);
+            cuentas = null;
+            banco = null;
+
+            long inicio = System.nanoTime();
+            Banco importado = CopiaBanco.importar(archivo);
+            long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+
+            testReporter.publishEntry("cuentas", String.valueOf(numeroCuentas));
+            testReporter.publishEntry("importar (ms)", String.valueOf(milisegundos));
+            assertEquals(numeroCuentas, importado.getCuentas().size());
+            assertEquals(BigDecimal.valueOf(numeroCuentas - 1, 2),
+                    importado.findCuenta("cuenta-" + (numeroCuentas - 1)).orElseThrow().getSaldo());
+        }
+    }
+}
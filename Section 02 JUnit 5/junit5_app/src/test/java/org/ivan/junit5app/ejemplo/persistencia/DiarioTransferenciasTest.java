@@ -0,0 +1,215 @@
+package org.ivan.junit5app.ejemplo.persistencia;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.Transferencia;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("persistencia")
+class DiarioTransferenciasTest {
+
+    @TempDir
+    Path directorio;
+
+    Path archivo;
+
+    @BeforeEach
+    void initMethodTest() {
+        archivo = directorio.resolve("transferencias.diario");
+    }
+
+    private static Banco crearBanco() {
+        Banco banco = new Banco();
+        banco.setNombre("Banco del Estado");
+        banco.addCuenta(new Cuenta("Ivan", new BigDecimal("1000.00")));
+        banco.addCuenta(new Cuenta("Juan", new BigDecimal("500.00")));
+        banco.addCuenta(new Cuenta("Pepe", new BigDecimal("0.00")));
+        return banco;
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que al reproducir el diario se recuperan los saldos")
+    void testReproducirDiario() throws IOException {
+        Banco banco = crearBanco();
+        Cuenta ivan = banco.findCuenta("Ivan").orElseThrow();
+        Cuenta juan = banco.findCuenta("Juan").orElseThrow();
+        Cuenta pepe = banco.findCuenta("Pepe").orElseThrow();
+
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            banco.setDiario(diario);
+            banco.transferir(ivan, juan, new BigDecimal("100.00"));
+            banco.transferir(juan, pepe, new BigDecimal("0.125"));
+            banco.transferirLote(List.of(
+                    new Transferencia(pepe, ivan, new BigDecimal("50.00")),
+                    new Transferencia(juan, pepe, new BigDecimal("60.00"))));
+            assertEquals(4, diario.getRegistros());
+        }
+
+        Banco recuperado = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            assertEquals(4, diario.reproducir(recuperado));
+        }
+
+        for (Cuenta cuenta : banco.getCuentas()) {
+            Cuenta otra = recuperado.findCuenta(cuenta.getNombre()).orElseThrow();
+            assertEquals(0, cuenta.getSaldo().compareTo(otra.getSaldo()), () -> "Saldo distinto para " + cuenta.getNombre());
+        }
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que el diario cambia de region y sigue escribiendo al reabrirlo")
+    void testRegionesYReapertura() throws IOException {
+        Banco banco = crearBanco();
+        Cuenta ivan = banco.findCuenta("Ivan").orElseThrow();
+        Cuenta juan = banco.findCuenta("Juan").orElseThrow();
+
+        // Regiones de 4 registros con flush cada 3 para pasar por los dos casos
+        int tamanioRegion = 4 * DiarioTransferencias.TAMANIO_REGISTRO;
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo, tamanioRegion, 3)) {
+            banco.setDiario(diario);
+            for (int i = 0; i < 10; i++) {
+                banco.transferir(ivan, juan, BigDecimal.ONE);
+            }
+        }
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo, tamanioRegion, 3)) {
+            assertEquals(10, diario.getRegistros());
+            banco.setDiario(diario);
+            banco.transferir(juan, ivan, BigDecimal.TEN);
+            assertEquals(11, diario.getRegistros());
+        }
+
+        Banco recuperado = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            assertEquals(11, diario.reproducir(recuperado));
+        }
+        assertEquals(0, new BigDecimal("1000.00").compareTo(recuperado.findCuenta("Ivan").orElseThrow().getSaldo()));
+        assertEquals(0, new BigDecimal("500.00").compareTo(recuperado.findCuenta("Juan").orElseThrow().getSaldo()));
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que un registro a medias se descarta al abrir")
+    void testRegistroCorrupto() throws IOException {
+        Banco banco = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            banco.setDiario(diario);
+            banco.transferir(banco.getCuentas().get(0), banco.getCuentas().get(1), BigDecimal.ONE);
+            banco.transferir(banco.getCuentas().get(0), banco.getCuentas().get(1), BigDecimal.ONE);
+        }
+        // Se cambia el monto del segundo registro sin actualizar el crc
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.allocate(8).putLong(0, 99L), DiarioTransferencias.TAMANIO_REGISTRO + 16);
+        }
+
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            assertEquals(1, diario.getRegistros());
+        }
+    }
+
+    @Test
+    @DisplayName("Test para comprobar que los registros detras de un hueco no reaparecen al reabrir")
+    void testHuecoTrasCaida() throws IOException {
+        Banco banco = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            banco.setDiario(diario);
+            for (int i = 0; i < 3; i++) {
+                banco.transferir(banco.getCuentas().get(0), banco.getCuentas().get(1), BigDecimal.ONE);
+            }
+        }
+        // Como si la pagina del segundo registro no hubiera llegado a disco y la del tercero si
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.allocate(DiarioTransferencias.TAMANIO_REGISTRO), DiarioTransferencias.TAMANIO_REGISTRO);
+        }
+
+        Banco recuperado = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            assertEquals(1, diario.getRegistros());
+            recuperado.setDiario(diario);
+            recuperado.transferir(recuperado.getCuentas().get(1), recuperado.getCuentas().get(2), BigDecimal.TEN);
+        }
+
+        // El tercer registro antiguo no vuelve detras del nuevo
+        Banco reproducido = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            assertEquals(2, diario.getRegistros());
+            assertEquals(2, diario.reproducir(reproducido));
+        }
+        assertEquals(new BigDecimal("999.00"), reproducido.getCuentas().get(0).getSaldo());
+        assertEquals(new BigDecimal("491.00"), reproducido.getCuentas().get(1).getSaldo());
+    }
+
+    @Test
+    @Tag("error")
+    void testCuentaFueraDelBanco() throws IOException {
+        Banco banco = crearBanco();
+        Cuenta externa = new Cuenta("Externa", new BigDecimal("100.00"));
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            banco.setDiario(diario);
+            assertThrows(IllegalArgumentException.class, () -> banco.transferir(externa, banco.getCuentas().get(0), BigDecimal.ONE));
+            assertEquals(0, diario.getRegistros());
+        }
+        assertEquals(new BigDecimal("100.00"), externa.getSaldo());
+    }
+
+    @Test
+    @Tag("error")
+    @DisplayName("Test para comprobar que una transferencia que no cabe en el diario no se aplica")
+    void testMontoFueraDelDiario() throws IOException {
+        Banco banco = crearBanco();
+        Cuenta ivan = banco.getCuentas().get(0);
+        Cuenta juan = banco.getCuentas().get(1);
+        // El valor sin escala, 10^19 + 1, no cabe en un long
+        BigDecimal monto = new BigDecimal("1.0000000000000000001");
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo)) {
+            banco.setDiario(diario);
+            assertThrows(ArithmeticException.class, () -> banco.transferir(ivan, juan, monto));
+            assertThrows(ArithmeticException.class, () -> banco.transferirLote(List.of(
+                    new Transferencia(ivan, juan, BigDecimal.ONE),
+                    new Transferencia(juan, ivan, monto))));
+
+            assertEquals(new BigDecimal("1000.00"), ivan.getSaldo());
+            assertEquals(new BigDecimal("500.00"), juan.getSaldo());
+            assertEquals(0, diario.getRegistros());
+            assertEquals(0, banco.getOperacionesAceptadas());
+
+            // El sitio reservado se devolvio: lo siguiente se registra con normalidad
+            banco.transferir(ivan, juan, BigDecimal.ONE);
+            assertEquals(1, diario.getRegistros());
+        }
+    }
+
+    @Test
+    @DisplayName("Test para comprobar un lote con mas registros de los que caben en una region")
+    void testLoteMayorQueRegion() throws IOException {
+        Banco banco = crearBanco();
+        Cuenta ivan = banco.getCuentas().get(0);
+        Cuenta juan = banco.getCuentas().get(1);
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo, 2 * DiarioTransferencias.TAMANIO_REGISTRO, 0)) {
+            banco.setDiario(diario);
+            banco.transferir(ivan, juan, BigDecimal.ONE);
+            banco.transferirLote(List.of(
+                    new Transferencia(ivan, juan, BigDecimal.ONE),
+                    new Transferencia(ivan, juan, BigDecimal.ONE),
+                    new Transferencia(juan, ivan, BigDecimal.TEN)));
+            banco.transferir(ivan, juan, BigDecimal.ONE);
+            assertEquals(5, diario.getRegistros());
+        }
+
+        Banco reproducido = crearBanco();
+        try (DiarioTransferencias diario = new DiarioTransferencias(archivo, 2 * DiarioTransferencias.TAMANIO_REGISTRO, 0)) {
+            assertEquals(5, diario.reproducir(reproducido));
+        }
+        assertEquals(new BigDecimal("1006.00"), reproducido.getCuentas().get(0).getSaldo());
+        assertEquals(new BigDecimal("494.00"), reproducido.getCuentas().get(1).getSaldo());
+    }
+}
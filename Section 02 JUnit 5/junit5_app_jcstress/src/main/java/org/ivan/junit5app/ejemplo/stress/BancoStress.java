@@ -0,0 +1,125 @@
+package org.ivan.junit5app.ejemplo.stress;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.InstantaneaBanco;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.IIII_Result;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.math.BigDecimal;
+
+import static org.openjdk.jcstress.annotations.Expect.*;
+
+/**
+ * Operaciones de {@link Banco} que se pueden llamar desde varios hilos. Aqui ningun resultado raro
+ * es aceptable: si aparece uno prohibido hay un fallo en los locks, el indice o el total.
+ */
+public class BancoStress {
+
+    private static final BigDecimal MONTO = new BigDecimal("60");
+
+    private BancoStress() {
+    }
+
+    @JCStressTest
+    @Description("Tres transferencias en circulo que comparten cuentas dos a dos")
+    @Outcome(id = "100, 100, 100, 300", expect = ACCEPTABLE, desc = "Cada cuenta recibe y envia lo mismo")
+    @Outcome(expect = FORBIDDEN, desc = "Actualizacion perdida, saldo negativo o total descuadrado")
+    @State
+    public static class TransferenciasCruzadas {
+        private final Banco banco = new Banco();
+        private final Cuenta a = new Cuenta("A", new BigDecimal("100"));
+        private final Cuenta b = new Cuenta("B", new BigDecimal("100"));
+        private final Cuenta c = new Cuenta("C", new BigDecimal("100"));
+
+        public TransferenciasCruzadas() {
+            banco.addCuenta(a);
+            banco.addCuenta(b);
+            banco.addCuenta(c);
+        }
+
+        @Actor
+        public void aHaciaB() {
+            banco.tryTransferir(a, b, MONTO);
+        }
+
+        @Actor
+        public void bHaciaC() {
+            banco.tryTransferir(b, c, MONTO);
+        }
+
+        @Actor
+        public void cHaciaA() {
+            banco.tryTransferir(c, a, MONTO);
+        }
+
+        @Arbiter
+        public void saldos(IIII_Result r) {
+            r.r1 = a.getSaldo().intValueExact();
+            r.r2 = b.getSaldo().intValueExact();
+            r.r3 = c.getSaldo().intValueExact();
+            r.r4 = banco.getTotal().intValueExact();
+        }
+    }
+
+    @JCStressTest
+    @Description("Dos hilos agregan cuentas al mismo banco")
+    @Outcome(id = "2, 2, 1", expect = ACCEPTABLE, desc = "Las dos cuentas quedan en la lista, en el indice y con posiciones distintas")
+    @Outcome(expect = FORBIDDEN, desc = "Cuenta perdida en la lista o el indice, o posicion repetida")
+    @State
+    public static class AddCuenta {
+        private final Banco banco = new Banco();
+        private final Cuenta ivan = new Cuenta("Ivan", BigDecimal.ONE);
+        private final Cuenta juan = new Cuenta("Juan", BigDecimal.ONE);
+
+        @Actor
+        public void agregarIvan() {
+            banco.addCuenta(ivan);
+        }
+
+        @Actor
+        public void agregarJuan() {
+            banco.addCuenta(juan);
+        }
+
+        @Arbiter
+        public void comprobar(III_Result r) {
+            r.r1 = banco.getCuentas().size();
+            r.r2 = (banco.findCuenta("Ivan").orElse(null) == ivan ? 1 : 0) + (banco.findCuenta("Juan").orElse(null) == juan ? 1 : 0);
+            r.r3 = ivan.getPosicion() + juan.getPosicion();
+        }
+    }
+
+    @JCStressTest
+    @Description("Lectura del total y de una instantanea durante una transferencia")
+    @Outcome(id = "200, 200", expect = ACCEPTABLE, desc = "El total se lee antes o despues de la transferencia")
+    @Outcome(id = "140, 200", expect = ACCEPTABLE_INTERESTING, desc = "Lectura partida: getTotal ve el debito sin el credito")
+    @Outcome(expect = FORBIDDEN, desc = "La instantanea ve dinero en vuelo o el total es imposible")
+    @State
+    public static class TotalDuranteTransferencia {
+        private final Banco banco = new Banco();
+        private final Cuenta a = new Cuenta("A", new BigDecimal("100"));
+        private final Cuenta b = new Cuenta("B", new BigDecimal("100"));
+
+        public TotalDuranteTransferencia() {
+            banco.addCuenta(a);
+            banco.addCuenta(b);
+            banco.instantanea().close();
+        }
+
+        @Actor
+        public void transferir() {
+            banco.transferir(a, b, MONTO);
+        }
+
+        @Actor
+        public void leer(II_Result r) {
+            r.r1 = banco.getTotal().intValueExact();
+            try (InstantaneaBanco instantanea = banco.instantanea()) {
+                r.r2 = instantanea.getTotal().intValueExact();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.ivan.junit5app.ejemplo.stress;
+
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.CuentaAtomica;
+import org.ivan.junit5app.ejemplo.models.CuentaCentimos;
+import org.ivan.junit5app.ejemplo.models.ResultadoOperacion;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.I_Result;
+import org.openjdk.jcstress.infra.results.J_Result;
+
+import java.math.BigDecimal;
+
+import static org.openjdk.jcstress.annotations.Expect.*;
+
+/**
+ * Debitos y creditos sobre una misma cuenta desde varios hilos, sin pasar por {@link org.ivan.junit5app.ejemplo.models.Banco}.
+ * {@link Cuenta} y {@link CuentaCentimos} no estan pensadas para esto y los resultados raros salen como
+ * "interesantes": asi se ve por que hay que usar {@code Banco.transferir}. En {@link CuentaAtomica}
+ * los mismos resultados estan prohibidos.
+ */
+public class CuentaStress {
+
+    private CuentaStress() {
+    }
+
+    @JCStressTest
+    @Description("Debito y credito concurrentes sobre Cuenta")
+    @Outcome(id = "100", expect = ACCEPTABLE, desc = "Se aplican los dos movimientos")
+    @Outcome(id = {"90", "110"}, expect = ACCEPTABLE_INTERESTING, desc = "Actualizacion perdida: Cuenta no es segura entre hilos")
+    @Outcome(expect = FORBIDDEN, desc = "Saldo imposible")
+    @State
+    public static class DebitoCreditoCuenta {
+        private final Cuenta cuenta = new Cuenta("Ivan", new BigDecimal("100"));
+
+        @Actor
+        public void debito() {
+            cuenta.debito(BigDecimal.TEN);
+        }
+
+        @Actor
+        public void credito() {
+            cuenta.credito(BigDecimal.TEN);
+        }
+
+        @Arbiter
+        public void saldo(I_Result r) {
+            r.r1 = cuenta.getSaldo().intValueExact();
+        }
+    }
+
+    @JCStressTest
+    @Description("Debito y credito concurrentes sobre CuentaAtomica")
+    @Outcome(id = "100", expect = ACCEPTABLE, desc = "Se aplican los dos movimientos")
+    @Outcome(id = {"90", "110"}, expect = FORBIDDEN, desc = "Actualizacion perdida")
+    @Outcome(expect = FORBIDDEN, desc = "Saldo imposible")
+    @State
+    public static class DebitoCreditoAtomica {
+        private final CuentaAtomica cuenta = new CuentaAtomica("Ivan", new BigDecimal("100"));
+
+        @Actor
+        public void debito() {
+            cuenta.debito(BigDecimal.TEN);
+        }
+
+        @Actor
+        public void credito() {
+            cuenta.credito(BigDecimal.TEN);
+        }
+
+        @Arbiter
+        public void saldo(I_Result r) {
+            r.r1 = cuenta.getSaldo().intValueExact();
+        }
+    }
+
+    @JCStressTest
+    @Description("Dos debitos de 10 sobre un saldo de 15 en Cuenta")
+    @Outcome(id = {"1, 0, 5", "0, 1, 5"}, expect = ACCEPTABLE, desc = "Se acepta un debito y se rechaza el otro")
+    @Outcome(id = "1, 1, -5", expect = ACCEPTABLE_INTERESTING, desc = "Saldo negativo: los dos comprobaron el saldo antes de restar")
+    @Outcome(id = "1, 1, 5", expect = ACCEPTABLE_INTERESTING, desc = "Actualizacion perdida: se cobran dos debitos y se resta uno")
+    @Outcome(expect = FORBIDDEN, desc = "Resultado imposible")
+    @State
+    public static class DobleDebitoCuenta {
+        private final Cuenta cuenta = new Cuenta("Ivan", new BigDecimal("15"));
+
+        @Actor
+        public void debito1(III_Result r) {
+            r.r1 = cuenta.tryDebito(BigDecimal.TEN) == ResultadoOperacion.ACEPTADA ? 1 : 0;
+        }
+
+        @Actor
+        public void debito2(III_Result r) {
+            r.r2 = cuenta.tryDebito(BigDecimal.TEN) == ResultadoOperacion.ACEPTADA ? 1 : 0;
+        }
+
+        @Arbiter
+        public void saldo(III_Result r) {
+            r.r3 = cuenta.getSaldo().intValueExact();
+        }
+    }
+
+    @JCStressTest
+    @Description("Dos debitos de 10 sobre un saldo de 15 en CuentaAtomica")
+    @Outcome(id = {"1, 0, 5", "0, 1, 5"}, expect = ACCEPTABLE, desc = "Se acepta un debito y se rechaza el otro")
+    @Outcome(id = "1, 1, -5", expect = FORBIDDEN, desc = "Saldo negativo")
+    @Outcome(id = "1, 1, 5", expect = FORBIDDEN, desc = "Actualizacion perdida")
+    @Outcome(expect = FORBIDDEN, desc = "Resultado imposible")
+    @State
+    public static class DobleDebitoAtomica {
+        private final CuentaAtomica cuenta = new CuentaAtomica("Ivan", new BigDecimal("15"));
+
+        @Actor
+        public void debito1(III_Result r) {
+            r.r1 = cuenta.tryDebito(BigDecimal.TEN) == ResultadoOperacion.ACEPTADA ? 1 : 0;
+        }
+
+        @Actor
+        public void debito2(III_Result r) {
+            r.r2 = cuenta.tryDebito(BigDecimal.TEN) == ResultadoOperacion.ACEPTADA ? 1 : 0;
+        }
+
+        @Arbiter
+        public void saldo(III_Result r) {
+            r.r3 = cuenta.getSaldo().intValueExact();
+        }
+    }
+
+    @JCStressTest
+    @Description("Lectura de getCentimos mientras otro hilo cambia el saldo")
+    @Outcome(id = {"0", "-1"}, expect = ACCEPTABLE, desc = "Se ve el saldo anterior o el nuevo")
+    @Outcome(expect = ACCEPTABLE_INTERESTING, desc = "Lectura partida: el long se escribio en dos mitades")
+    @State
+    public static class LecturaCentimos {
+        private final CuentaCentimos cuenta = new CuentaCentimos("Ivan", 0L);
+
+        @Actor
+        public void escribir() {
+            // Todos los bits a 1, asi cualquier mitad vieja se nota
+            cuenta.setCentimos(-1L);
+        }
+
+        @Actor
+        public void leer(J_Result r) {
+            r.r1 = cuenta.getCentimos();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.ivan.junit5app.ejemplo.benchmarks;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construir un banco con {@link Banco#addCuenta} cuenta a cuenta, que incluye el indice por nombre
+ * y el total. Con varios hilos cada uno construye su propio banco.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BancoAddCuentaBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int cuentas;
+
+    Cuenta[] nuevas;
+    Banco banco;
+
+    @Setup(Level.Trial)
+    public void crearCuentas() {
+        nuevas = new Cuenta[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            nuevas[i] = new Cuenta("cuenta-" + i, new BigDecimal("100.00"));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void crearBanco() {
+        banco = new Banco();
+    }
+
+    @Benchmark
+    public Banco addCuenta() {
+        for (Cuenta cuenta : nuevas) {
+            banco.addCuenta(cuenta);
+        }
+        return banco;
+    }
+}
@@ -0,0 +1,94 @@
+package org.ivan.junit5app.ejemplo.benchmarks;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Banco#transferir} con varios hilos. Con {@code COMPARTIDAS} todos los hilos usan el mismo
+ * banco y eligen entre todas sus cuentas, y con pocas cuentas aparece la contencion. Con
+ * {@code DISJUNTAS} cada hilo tiene su propio banco con su parte de las cuentas ({@code cuentas}
+ * entre los hilos que de verdad ejecuta JMH, {@code -t}): los hilos no comparten locks por stripe,
+ * ni el total del banco, ni sus contadores, que es el caso que debe escalar con los nucleos. Lo
+ * unico que siguen compartiendo es el recolector de basura, que recoge los BigDecimal de cada
+ * operacion, y la cache y el ancho de banda de memoria. Si no llegan a dos cuentas por hilo el
+ * benchmark falla en lugar de medir otra cosa sin decirlo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BancoTransferirBenchmark {
+
+    private static final BigDecimal MONTO = new BigDecimal("1.00");
+
+    public enum Modo {DISJUNTAS, COMPARTIDAS}
+
+    @Param({"16", "1024", "100000"})
+    int cuentas;
+
+    @Param({"DISJUNTAS", "COMPARTIDAS"})
+    Modo modo;
+
+    Banco banco;
+    Cuenta[] todas;
+    final AtomicInteger hilos = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (modo == Modo.COMPARTIDAS) {
+            banco = new Banco();
+            todas = crearCuentas(banco, cuentas);
+        }
+    }
+
+    static Cuenta[] crearCuentas(Banco banco, int numero) {
+        List<Cuenta> lista = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            lista.add(new Cuenta("cuenta-" + i, new BigDecimal("1000000000.00")));
+        }
+        banco.setCuentas(lista);
+        return lista.toArray(new Cuenta[0]);
+    }
+
+    @State(Scope.Thread)
+    public static class Hilo {
+        Banco banco;
+        Cuenta[] cuentas;
+
+        @Setup(Level.Trial)
+        public void setUp(BancoTransferirBenchmark benchmark, BenchmarkParams params) {
+            if (benchmark.modo == Modo.COMPARTIDAS) {
+                banco = benchmark.banco;
+                cuentas = benchmark.todas;
+                return;
+            }
+            int totalHilos = params.getThreads();
+            int numero = benchmark.hilos.getAndIncrement();
+            int tamanio = benchmark.cuentas / totalHilos;
+            if (tamanio < 2 || numero >= totalHilos) {
+                throw new IllegalStateException("No se pueden repartir " + benchmark.cuentas
+                        + " cuentas en grupos disjuntos de al menos 2 para " + totalHilos + " hilos");
+            }
+            banco = new Banco();
+            cuentas = crearCuentas(banco, tamanio);
+        }
+    }
+
+    @Benchmark
+    public void transferir(Hilo hilo) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Cuenta[] cuentas = hilo.cuentas;
+        hilo.banco.transferir(cuentas[random.nextInt(cuentas.length)], cuentas[random.nextInt(cuentas.length)], MONTO);
+    }
+}
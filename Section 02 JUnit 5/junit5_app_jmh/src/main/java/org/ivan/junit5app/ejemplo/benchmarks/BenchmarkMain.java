@@ -0,0 +1,35 @@
+package org.ivan.junit5app.ejemplo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanza los benchmarks una vez por cada numero de hilos, con el profiler de GC para tener la tasa
+ * de asignacion ademas del throughput. El numero de cuentas se controla con los {@code @Param}.
+ * <pre>
+ * java -jar target/benchmarks.jar [regex de benchmarks] [hilos separados por comas]
+ * java -jar target/benchmarks.jar BancoTransferir 1,2,4,8
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String incluir = args.length > 0 ? args[0] : ".*";
+        String hilos = args.length > 1 ? args[1] : "1," + Runtime.getRuntime().availableProcessors();
+
+        for (String numero : hilos.split(",")) {
+            int numeroHilos = Integer.parseInt(numero.trim());
+            ChainedOptionsBuilder opciones = new OptionsBuilder()
+                    .include(incluir)
+                    .threads(numeroHilos)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-" + numeroHilos + "-hilos.json");
+            new Runner(opciones.build()).run();
+        }
+    }
+}
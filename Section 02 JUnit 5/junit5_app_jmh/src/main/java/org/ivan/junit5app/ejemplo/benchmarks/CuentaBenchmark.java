@@ -0,0 +1,76 @@
+package org.ivan.junit5app.ejemplo.benchmarks;
+
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.CuentaAtomica;
+import org.ivan.junit5app.ejemplo.models.CuentaCentimos;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debito y credito sobre cuentas sueltas. Cada hilo tiene sus propias cuentas, asi se mide el coste
+ * de la operacion sin contencion. Cada invocacion hace un debito y un credito del mismo importe
+ * para que el saldo no se agote.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CuentaBenchmark {
+
+    private static final BigDecimal MONTO = new BigDecimal("1.00");
+    private static final long MONTO_CENTIMOS = 100L;
+
+    @Param({"1", "1000", "100000"})
+    int cuentas;
+
+    Cuenta[] cuentasBigDecimal;
+    CuentaCentimos[] cuentasCentimos;
+    CuentaAtomica[] cuentasAtomicas;
+    int siguiente;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cuentasBigDecimal = new Cuenta[cuentas];
+        cuentasCentimos = new CuentaCentimos[cuentas];
+        cuentasAtomicas = new CuentaAtomica[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            cuentasBigDecimal[i] = new Cuenta("cuenta-" + i, new BigDecimal("1000.00"));
+            cuentasCentimos[i] = new CuentaCentimos("cuenta-" + i, 100_000L);
+            cuentasAtomicas[i] = new CuentaAtomica("cuenta-" + i, new BigDecimal("1000.00"));
+        }
+    }
+
+    private int siguiente() {
+        int i = siguiente;
+        siguiente = i + 1 == cuentas ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Cuenta debitoCreditoBigDecimal() {
+        Cuenta cuenta = cuentasBigDecimal[siguiente()];
+        cuenta.debito(MONTO);
+        cuenta.credito(MONTO);
+        return cuenta;
+    }
+
+    @Benchmark
+    public long debitoCreditoCentimos() {
+        CuentaCentimos cuenta = cuentasCentimos[siguiente()];
+        cuenta.debito(MONTO_CENTIMOS);
+        cuenta.credito(MONTO_CENTIMOS);
+        return cuenta.getCentimos();
+    }
+
+    @Benchmark
+    public Cuenta debitoCreditoAtomica() {
+        CuentaAtomica cuenta = cuentasAtomicas[siguiente()];
+        cuenta.debito(MONTO);
+        cuenta.credito(MONTO);
+        return cuenta;
+    }
+}
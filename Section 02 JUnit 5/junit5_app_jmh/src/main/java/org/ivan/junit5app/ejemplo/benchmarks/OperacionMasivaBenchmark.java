@@ -0,0 +1,94 @@
+package org.ivan.junit5app.ejemplo.benchmarks;
+
+import org.ivan.junit5app.ejemplo.models.Banco;
+import org.ivan.junit5app.ejemplo.models.Cuenta;
+import org.ivan.junit5app.ejemplo.models.CuentaCentimos;
+import org.ivan.junit5app.ejemplo.models.OperacionMasiva;
+import org.ivan.junit5app.ejemplo.models.PoliticaDescubierto;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intereses de fin de mes sobre todas las cuentas: el bucle de siempre con {@link BigDecimal} por
+ * cuenta, el calculo sobre un array de centimos con {@link OperacionMasiva} y
+ * {@link Banco#aplicarTasa}, que ademas pasa los saldos al array y escribe los que cambian, con
+ * cuentas {@link BigDecimal} y con {@link CuentaCentimos}.
+ * Cada invocacion suma y resta la misma tasa para que los saldos no crezcan sin parar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OperacionMasivaBenchmark {
+
+    private static final BigDecimal TASA = new BigDecimal("0.0125");
+    private static final BigDecimal TASA_INVERSA = TASA.negate();
+
+    @Param({"10000", "1000000"})
+    int cuentas;
+
+    List<Cuenta> listaCuentas;
+    long[] centimos;
+    Banco banco;
+    Banco bancoCentimos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        listaCuentas = new ArrayList<>(cuentas);
+        centimos = new long[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            long saldo = 10_000L + i % 100_000;
+            listaCuentas.add(new Cuenta("cuenta-" + i, BigDecimal.valueOf(saldo, 2)));
+            centimos[i] = saldo;
+        }
+        banco = new Banco();
+        bancoCentimos = new Banco();
+        List<Cuenta> cuentasBanco = new ArrayList<>(cuentas);
+        List<Cuenta> cuentasCentimos = new ArrayList<>(cuentas);
+        for (int i = 0; i < cuentas; i++) {
+            cuentasBanco.add(new Cuenta("cuenta-" + i, BigDecimal.valueOf(centimos[i], 2)));
+            cuentasCentimos.add(new CuentaCentimos("cuenta-" + i, centimos[i]));
+        }
+        banco.setCuentas(cuentasBanco);
+        bancoCentimos.setCuentas(cuentasCentimos);
+    }
+
+    @Benchmark
+    public List<Cuenta> bucleCuentas() {
+        for (Cuenta cuenta : listaCuentas) {
+            cuenta.credito(cuenta.getSaldo().multiply(TASA).setScale(2, RoundingMode.HALF_EVEN));
+        }
+        for (Cuenta cuenta : listaCuentas) {
+            cuenta.credito(cuenta.getSaldo().multiply(TASA_INVERSA).setScale(2, RoundingMode.HALF_EVEN));
+        }
+        return listaCuentas;
+    }
+
+    @Benchmark
+    public long[] arrayCentimos() {
+        OperacionMasiva.aplicarTasa(centimos, TASA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        OperacionMasiva.aplicarTasa(centimos, TASA_INVERSA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        return centimos;
+    }
+
+    @Benchmark
+    public Banco bancoAplicarTasa() {
+        banco.aplicarTasa(TASA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        banco.aplicarTasa(TASA_INVERSA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        return banco;
+    }
+
+    @Benchmark
+    public Banco bancoCentimosAplicarTasa() {
+        bancoCentimos.aplicarTasa(TASA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        bancoCentimos.aplicarTasa(TASA_INVERSA, RoundingMode.HALF_EVEN, PoliticaDescubierto.RECHAZAR);
+        return bancoCentimos;
+    }
+}
@@ -0,0 +1,7 @@
+package org.ivan.appmockito.ejemplos.exceptions;
+
+public class BulkheadFullException extends RuntimeException {
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
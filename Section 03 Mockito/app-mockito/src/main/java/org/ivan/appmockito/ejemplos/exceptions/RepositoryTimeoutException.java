@@ -0,0 +1,7 @@
+package org.ivan.appmockito.ejemplos.exceptions;
+
+public class RepositoryTimeoutException extends RuntimeException {
+    public RepositoryTimeoutException(String message) {
+        super(message);
+    }
+}
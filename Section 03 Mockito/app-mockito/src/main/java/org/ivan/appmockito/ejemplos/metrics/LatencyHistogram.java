@@ -0,0 +1,98 @@
+package org.ivan.appmockito.ejemplos.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con memoria fija: {@value #BUCKETS} contadores cubren
+ * desde 0 hasta {@code Long.MAX_VALUE}. Por debajo de 16ns cada valor tiene su contador; por encima,
+ * cada potencia de dos se parte en 16 tramos, asi el error de un percentil es como mucho del 6,25%.
+ * <p>
+ * Registrar es un par de operaciones atomicas sin locks ni reservas de memoria, y se puede hacer
+ * desde varios hilos. Ademas de las latencias cuenta las llamadas que terminaron con error; esas
+ * tambien entran en los percentiles. Los histogramas se pueden sumar con {@link #merge(LatencyHistogram)}.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra una llamada que termino bien. Los valores negativos cuentan como 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        long current = max.get();
+        // Casi siempre el valor no es el maximo y no hace falta el CAS
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Registra una llamada que termino con error.
+     */
+    public void recordError(long nanos) {
+        errors.increment();
+        record(nanos);
+    }
+
+    /**
+     * Suma los datos de otro histograma a este. El otro puede seguir recibiendo datos mientras tanto.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalNanos.add(other.totalNanos.sum());
+        errors.add(other.errors.sum());
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Copia de los datos en este momento, para consultar percentiles sin que cambien a mitad.
+     */
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new LatencySnapshot(copy, totalNanos.sum(), errors.sum(), max.get());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Mayor valor que cae en el tramo
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package org.ivan.appmockito.ejemplos.metrics;
+
+import java.time.Duration;
+
+/**
+ * Foto de un {@link LatencyHistogram} en un momento dado. Los percentiles devuelven el mayor valor
+ * del tramo donde caen, nunca mas que el maximo registrado.
+ */
+public class LatencySnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long errors;
+    private final long maxNanos;
+
+    LatencySnapshot(long[] counts, long totalNanos, long errors, long maxNanos) {
+        this.counts = counts;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.errors = errors;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errors;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0.0 : (double) totalNanos / count;
+    }
+
+    /**
+     * Latencia por debajo de la que queda el {@code percentile} por ciento de las llamadas, por ejemplo
+     * {@code 99.0}. Sin llamadas devuelve 0.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public long getP50Nanos() {
+        return getPercentileNanos(50.0);
+    }
+
+    public long getP90Nanos() {
+        return getPercentileNanos(90.0);
+    }
+
+    public long getP99Nanos() {
+        return getPercentileNanos(99.0);
+    }
+
+    public Duration getPercentile(double percentile) {
+        return Duration.ofNanos(getPercentileNanos(percentile));
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", errors=" + errors + ", p50=" + getP50Nanos() + "ns, p90=" + getP90Nanos()
+                + "ns, p99=" + getP99Nanos() + "ns, max=" + maxNanos + "ns";
+    }
+}
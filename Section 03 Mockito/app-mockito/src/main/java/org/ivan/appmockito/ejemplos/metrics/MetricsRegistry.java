@@ -0,0 +1,56 @@
+package org.ivan.appmockito.ejemplos.metrics;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histogramas de latencia por nombre, por ejemplo {@code "ExamRepository.findAll"}. Los decoradores
+ * piden su histograma una vez al crearse y despues registran sin pasar por el registro.
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * El histograma con ese nombre; si no existe se crea vacio.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public Optional<LatencySnapshot> snapshot(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? Optional.of(histogram.snapshot()) : Optional.empty();
+    }
+
+    /**
+     * Fotos de todos los histogramas cuyo nombre empieza por {@code prefix}, ordenadas por nombre.
+     * Con el prefijo vacio devuelve todos.
+     */
+    public SortedMap<String, LatencySnapshot> snapshots(String prefix) {
+        SortedMap<String, LatencySnapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                snapshots.put(entry.getKey(), entry.getValue().snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Suma en un solo histograma todos los que empiezan por {@code prefix}, por ejemplo todos los
+     * metodos de un repositorio.
+     */
+    public LatencySnapshot merged(String prefix) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                merged.merge(entry.getValue());
+            }
+        }
+        return merged.snapshot();
+    }
+}
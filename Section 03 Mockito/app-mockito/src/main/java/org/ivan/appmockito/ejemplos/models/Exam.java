@@ -5,12 +5,13 @@ import java.util.List;
 public class Exam {
     private Long id;
     private String nombre;
+    // Siempre una lista del QuestionDictionary: los textos se comparten entre examenes
     private List<String> preguntas;
 
     public Exam(Long id, String nombre) {
         this.id = id;
         this.nombre = nombre;
-        this.preguntas = List.of();
+        this.preguntas = QuestionDictionary.getDefault().encode(List.of());
     }
 
     public Long getId() {
@@ -21,12 +22,20 @@ public class Exam {
         this.id = id;
     }
 
+    /**
+     * Las preguntas como lista inmutable del {@link QuestionDictionary}; para cambiarlas se llama a
+     * {@link #setPreguntas(List)} con una lista nueva. Es null si se guardo null.
+     */
     public List<String> getPreguntas() {
         return preguntas;
     }
 
+    /**
+     * Guarda una copia codificada de {@code preguntas}; los cambios posteriores en esa lista no
+     * afectan al examen. Admite null y preguntas null.
+     */
     public void setPreguntas(List<String> preguntas) {
-        this.preguntas = preguntas;
+        this.preguntas = QuestionDictionary.getDefault().encode(preguntas);
     }
 
     public String getNombre() {
@@ -0,0 +1,123 @@
+package org.ivan.appmockito.ejemplos.models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diccionario de textos de preguntas. Cada pregunta distinta se guarda una sola vez y recibe un
+ * numero; una lista de preguntas se guarda como un {@code int[]} con esos numeros. Asi, si miles de
+ * examenes tienen "algebra", hay un solo {@code String} "algebra" y cada examen solo paga 4 bytes.
+ * <p>
+ * Las listas que devuelve {@link #encode(List)} son inmutables y se leen a traves del diccionario.
+ * Pueden tener preguntas null, que no se registran. Las preguntas nunca se borran. Se puede usar
+ * desde varios hilos.
+ */
+public final class QuestionDictionary {
+
+    private static final QuestionDictionary DEFAULT = new QuestionDictionary();
+    // Numero reservado para las preguntas null; ConcurrentHashMap no admite claves null
+    private static final int NULL_ID = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // Se escribe el texto antes de publicar su id en el mapa
+    private volatile String[] texts = new String[64];
+    private int size;
+    private final QuestionList empty = new QuestionList(this, new int[0]);
+
+    /**
+     * Diccionario que usan {@link Exam} y los repositorios.
+     */
+    public static QuestionDictionary getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Devuelve una lista con las mismas preguntas guardada como numeros del diccionario, registrando
+     * las preguntas nuevas. Si ya es una lista de este diccionario se devuelve tal cual, y si es
+     * null se devuelve null.
+     */
+    public List<String> encode(List<String> questions) {
+        if (questions == null) {
+            return null;
+        }
+        if (questions instanceof QuestionList && ((QuestionList) questions).dictionary == this) {
+            return questions;
+        }
+        if (questions.isEmpty()) {
+            return empty;
+        }
+        int[] encoded = new int[questions.size()];
+        int i = 0;
+        for (String question : questions) {
+            encoded[i++] = idOf(question);
+        }
+        return new QuestionList(this, encoded);
+    }
+
+    /**
+     * Numero de preguntas distintas guardadas.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    int idOf(String question) {
+        if (question == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(question);
+        return id != null ? id : add(question);
+    }
+
+    String text(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        String[] current = texts;
+        if (id < current.length && current[id] != null) {
+            return current[id];
+        }
+        // La lista pudo llegar de otro hilo sin sincronizacion; el lock garantiza ver el texto
+        synchronized (this) {
+            return texts[id];
+        }
+    }
+
+    private synchronized int add(String question) {
+        Integer existing = ids.get(question);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = texts;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = question;
+        texts = current;
+        ids.put(question, size);
+        return size++;
+    }
+
+    private static final class QuestionList extends AbstractList<String> implements RandomAccess {
+        private final QuestionDictionary dictionary;
+        private final int[] ids;
+
+        private QuestionList(QuestionDictionary dictionary, int[] ids) {
+            this.dictionary = dictionary;
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return dictionary.text(ids[index]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+/**
+ * Foto de las estadisticas de {@link CachingExamRepository} en un momento dado.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long loadCount;
+    private final long totalLoadTimeNanos;
+    private final long evictions;
+
+    public CacheStats(long hits, long misses, long loadCount, long totalLoadTimeNanos, long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadCount = loadCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.evictions = evictions;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos;
+    }
+
+    public double getAverageLoadTimeNanos() {
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", loadCount=" + loadCount
+                + ", totalLoadTimeNanos=" + totalLoadTimeNanos + ", evictions=" + evictions + "}";
+    }
+}
@@ -0,0 +1,153 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Decorador de {@link ExamRepository} que guarda en memoria el resultado de {@link #findAll()}.
+ * <ul>
+ *     <li>El resultado caduca pasado el {@code ttl}.</li>
+ *     <li>Un resultado con mas de {@code maxExams} examenes no se guarda y cuenta como
+ *     {@link CacheStats#getEvictions() eviction}.</li>
+ *     <li>{@link #save(Exam)} y {@link #saveAll(List)} vacian la cache para que la siguiente consulta
+ *     vea los examenes nuevos.</li>
+ *     <li>{@link #streamAll()} sale de la cache si {@link #findAll()} esta guardado; si no, cuenta un
+ *     fallo y lee del repositorio sin guardar nada. Las paginas no se guardan.</li>
+ * </ul>
+ * La lista devuelta es una copia de solo lectura compartida entre llamadas; igual que en el
+ * repositorio, puede tener elementos null. Se puede usar desde varios hilos: los aciertos solo leen
+ * un campo volatile, y si dos hilos piden a la vez algo que no esta, los dos van al repositorio.
+ */
+public class CachingExamRepository implements ExamRepository {
+
+    private final ExamRepository delegate;
+    private final long ttlNanos;
+    private final int maxExams;
+    private final LongSupplier clock;
+
+    // null si no hay nada guardado
+    private volatile Entry cached;
+    // Cambia en cada invalidacion; una carga empezada antes no puede guardar su resultado despues
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingExamRepository(ExamRepository delegate, Duration ttl, int maxExams) {
+        this(delegate, ttl, maxExams, System::nanoTime);
+    }
+
+    CachingExamRepository(ExamRepository delegate, Duration ttl, int maxExams, LongSupplier clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("El ttl debe ser positivo");
+        }
+        if (maxExams <= 0) {
+            throw new IllegalArgumentException("maxExams debe ser positivo");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.maxExams = maxExams;
+        this.clock = clock;
+    }
+
+    @Override
+    public Exam save(Exam exam) {
+        try {
+            return delegate.save(exam);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public List<Exam> saveAll(List<Exam> exams) {
+        try {
+            return delegate.saveAll(exams);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    // La carga se hace fuera del lock para que una consulta lenta no bloquee a nadie
+    @Override
+    public List<Exam> findAll() {
+        List<Exam> exams = cached();
+        if (exams != null) {
+            return exams;
+        }
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+
+        long start = clock.getAsLong();
+        // List.copyOf no admite null y el repositorio si puede devolverlos
+        exams = Collections.unmodifiableList(new ArrayList<>(delegate.findAll()));
+        long end = clock.getAsLong();
+        loadCount.increment();
+        totalLoadTimeNanos.add(end - start);
+
+        synchronized (this) {
+            if (startGeneration == generation) {
+                if (exams.size() <= maxExams) {
+                    cached = new Entry(exams, end);
+                } else {
+                    cached = null;
+                    evictions.increment();
+                }
+            }
+        }
+        return exams;
+    }
+
+    @Override
+    public Stream<Exam> streamAll() {
+        List<Exam> exams = cached();
+        return exams != null ? exams.stream() : delegate.streamAll();
+    }
+
+    @Override
+    public ExamPage findPage(String cursor, int pageSize) {
+        return delegate.findPage(cursor, pageSize);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        cached = null;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), loadCount.sum(), totalLoadTimeNanos.sum(), evictions.sum());
+    }
+
+    // Lo guardado, o null si no hay nada o ha caducado; cuenta el acierto o el fallo pero no carga nada
+    private List<Exam> cached() {
+        Entry entry = cached;
+        if (entry != null && clock.getAsLong() - entry.loadedAt < ttlNanos) {
+            hits.increment();
+            return entry.exams;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private static final class Entry {
+        private final List<Exam> exams;
+        private final long loadedAt;
+
+        private Entry(List<Exam> exams, long loadedAt) {
+            this.exams = exams;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorador de {@link QuestionRepository} que junta las busquedas simultaneas del mismo examen.
+ * Si llega una busqueda mientras otra del mismo id esta en curso, no se llama otra vez al
+ * repositorio: se espera a la que ya esta en marcha y se devuelve su resultado. Si esa falla,
+ * todos los que esperaban reciben la misma excepcion.
+ * <p>
+ * No es una cache: en cuanto la busqueda termina, bien o mal, la siguiente vuelve a ir al
+ * repositorio. Las busquedas por lotes y los guardados pasan directamente al repositorio.
+ */
+public class CoalescingQuestionRepository implements QuestionRepository {
+
+    private final QuestionRepository delegate;
+    private final ConcurrentHashMap<Long, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    public CoalescingQuestionRepository(QuestionRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<String> findQuestionByExamById(Long id) {
+        // ConcurrentHashMap no admite claves null
+        if (id == null) {
+            return delegate.findQuestionByExamById(null);
+        }
+        CompletableFuture<List<String>> load = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = inFlight.putIfAbsent(id, load);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return await(existing);
+        }
+
+        try {
+            List<String> questions = delegate.findQuestionByExamById(id);
+            load.complete(questions);
+            return questions;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, load);
+        }
+    }
+
+    @Override
+    public Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids) {
+        return delegate.findQuestionsByExamIds(ids);
+    }
+
+    @Override
+    public void saveQuestions(List<String> questions) {
+        delegate.saveQuestions(questions);
+    }
+
+    @Override
+    public void saveAllQuestions(List<List<String>> questions) {
+        delegate.saveAllQuestions(questions);
+    }
+
+    /**
+     * Numero de busquedas que se resolvieron esperando a otra en curso, sin llamar al repositorio.
+     */
+    public long getCoalescedCalls() {
+        return coalescedCalls.sum();
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> load) {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Espera de preguntas interrumpida");
+        }
+    }
+}
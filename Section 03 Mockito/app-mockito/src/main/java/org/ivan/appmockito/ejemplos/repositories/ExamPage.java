@@ -0,0 +1,86 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Una pagina de examenes de {@link ExamRepository#findPage(String, int)}. El cursor es opaco: solo
+ * sirve para pedir la pagina siguiente, y es {@code null} en la ultima.
+ */
+public class ExamPage {
+    private final List<Exam> exams;
+    private final String nextCursor;
+
+    public ExamPage(List<Exam> exams, String nextCursor) {
+        this.exams = List.copyOf(exams);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Exam> getExams() {
+        return exams;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Recorre todo el catalogo pidiendo las paginas segun se van necesitando. Solo hay una pagina en
+     * memoria cada vez, y si el stream se corta antes (por ejemplo con {@code findFirst}) no se piden
+     * las paginas que faltan.
+     */
+    public static Stream<Exam> stream(ExamRepository repository, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize debe ser positivo");
+        }
+        Iterator<Exam> iterator = new PageIterator(repository, pageSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static final class PageIterator implements Iterator<Exam> {
+        private final ExamRepository repository;
+        private final int pageSize;
+        private Iterator<Exam> current;
+        private String cursor;
+        private boolean lastPage;
+
+        private PageIterator(ExamRepository repository, int pageSize) {
+            this.repository = repository;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Una pagina vacia con cursor no termina el recorrido
+            while (current == null || !current.hasNext()) {
+                if (lastPage) {
+                    return false;
+                }
+                ExamPage page = repository.findPage(cursor, pageSize);
+                current = page.getExams().iterator();
+                cursor = page.getNextCursor();
+                lastPage = !page.hasNext();
+            }
+            return true;
+        }
+
+        @Override
+        public Exam next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
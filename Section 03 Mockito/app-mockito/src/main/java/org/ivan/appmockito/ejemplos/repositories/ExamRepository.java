@@ -3,8 +3,28 @@ package org.ivan.appmockito.ejemplos.repositories;
 import org.ivan.appmockito.ejemplos.models.Exam;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ExamRepository {
     Exam save(Exam exam);
+
+    /**
+     * Guarda varios examenes en una sola operacion y los devuelve guardados, en el mismo orden.
+     */
+    List<Exam> saveAll(List<Exam> exams);
+
     List<Exam> findAll();
+
+    /**
+     * Todos los examenes, en el mismo orden que {@link #findAll()}, pero sin cargarlos todos de
+     * golpe: se van leyendo segun se consumen. Hay que cerrar el stream al terminar, porque puede
+     * tener abierta la lectura.
+     */
+    Stream<Exam> streamAll();
+
+    /**
+     * Una pagina de como mucho {@code pageSize} examenes. Con {@code cursor} {@code null} devuelve la
+     * primera; para las siguientes se pasa el {@link ExamPage#getNextCursor()} de la anterior.
+     */
+    ExamPage findPage(String cursor, int pageSize);
 }
@@ -3,15 +3,30 @@ package org.ivan.appmockito.ejemplos.repositories;
 import org.ivan.appmockito.ejemplos.Data;
 import org.ivan.appmockito.ejemplos.models.Exam;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class ExamRepositoryImpl implements ExamRepository {
+
+    private static final int STREAM_PAGE_SIZE = 100;
+
     @Override
     public Exam save(Exam exam) {
         System.out.println("ExamRepositoryImpl.save");
         return Data.EXAM;
     }
 
+    @Override
+    public List<Exam> saveAll(List<Exam> exams) {
+        System.out.println("ExamRepositoryImpl.saveAll");
+        List<Exam> saved = new ArrayList<>(exams.size());
+        for (int i = 0; i < exams.size(); i++) {
+            saved.add(Data.EXAM);
+        }
+        return saved;
+    }
+
     @Override
     public List<Exam> findAll() {
         try {
@@ -22,4 +37,37 @@ public class ExamRepositoryImpl implements ExamRepository {
         System.out.println("ExamRepositoryImpl.findAll");
         return Data.DATA_EXAM;
     }
+
+    @Override
+    public Stream<Exam> streamAll() {
+        return ExamPage.stream(this, STREAM_PAGE_SIZE);
+    }
+
+    // El cursor es el id del ultimo examen devuelto, asi la pagina siguiente no depende de posiciones
+    @Override
+    public ExamPage findPage(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize debe ser positivo");
+        }
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        System.out.println("ExamRepositoryImpl.findPage");
+        long after = cursor != null ? Long.parseLong(cursor) : Long.MIN_VALUE;
+        List<Exam> page = new ArrayList<>(pageSize);
+        boolean more = false;
+        for (Exam exam : Data.DATA_EXAM) {
+            if (exam.getId() > after) {
+                if (page.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                page.add(exam);
+            }
+        }
+        String next = more ? String.valueOf(page.get(page.size() - 1).getId()) : null;
+        return new ExamPage(page, next);
+    }
 }
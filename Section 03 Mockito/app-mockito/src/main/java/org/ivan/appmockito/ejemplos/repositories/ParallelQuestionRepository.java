@@ -0,0 +1,126 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decorador de {@link QuestionRepository} para repositorios que solo saben buscar las preguntas de
+ * un examen cada vez. {@link #findQuestionsByExamIds(Collection)} lanza una llamada a
+ * {@link QuestionRepository#findQuestionByExamById(Long)} por examen, cada una en un hilo virtual,
+ * con como mucho {@code maxConcurrency} llamadas a la vez. Asi el tiempo total se acerca al de la
+ * llamada mas lenta en lugar de a la suma de todas.
+ * <p>
+ * El mapa devuelto sigue el orden de los ids pedidos, termine antes la llamada que termine. Las
+ * respuestas se recogen segun llegan: en cuanto una llamada falla se cancelan las demas, aunque
+ * alguna anterior en la lista siga en curso, y se relanza su excepcion.
+ */
+public class ParallelQuestionRepository implements QuestionRepository {
+
+    private final QuestionRepository delegate;
+    private final int maxConcurrency;
+
+    public ParallelQuestionRepository(QuestionRepository delegate, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency debe ser positivo");
+        }
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public List<String> findQuestionByExamById(Long id) {
+        return delegate.findQuestionByExamById(id);
+    }
+
+    @Override
+    public Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Map<Future<List<String>>, Long> idsByFuture = new HashMap<>();
+        Map<Long, List<String>> found = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<List<String>> completion = new ExecutorCompletionService<>(executor);
+            for (Long id : uniqueIds) {
+                idsByFuture.put(completion.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return delegate.findQuestionByExamById(id);
+                    } finally {
+                        permits.release();
+                    }
+                }), id);
+            }
+            // Se recogen segun terminan, asi un fallo cancela el resto aunque haya llamadas lentas antes
+            for (int i = 0; i < idsByFuture.size(); i++) {
+                Future<List<String>> done = take(completion, idsByFuture.keySet());
+                found.put(idsByFuture.get(done), await(done, idsByFuture.keySet()));
+            }
+        }
+
+        Map<Long, List<String>> questions = new LinkedHashMap<>();
+        for (Long id : uniqueIds) {
+            questions.put(id, found.get(id));
+        }
+        return questions;
+    }
+
+    @Override
+    public void saveQuestions(List<String> questions) {
+        delegate.saveQuestions(questions);
+    }
+
+    @Override
+    public void saveAllQuestions(List<List<String>> questions) {
+        delegate.saveAllQuestions(questions);
+    }
+
+    private static Future<List<String>> take(CompletionService<List<String>> completion,
+                                             Collection<Future<List<String>>> all) {
+        try {
+            return completion.take();
+        } catch (InterruptedException e) {
+            cancelAll(all);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Carga de preguntas interrumpida");
+        }
+    }
+
+    // Solo se llama con futuros ya terminados
+    private static List<String> await(Future<List<String>> future, Collection<Future<List<String>>> all) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            cancelAll(all);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll(all);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Carga de preguntas interrumpida");
+        }
+    }
+
+    private static void cancelAll(Collection<Future<List<String>>> all) {
+        for (Future<List<String>> future : all) {
+            future.cancel(true);
+        }
+    }
+}
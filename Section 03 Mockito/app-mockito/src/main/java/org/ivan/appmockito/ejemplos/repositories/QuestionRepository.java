@@ -1,9 +1,23 @@
 package org.ivan.appmockito.ejemplos.repositories;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface QuestionRepository {
     List<String> findQuestionByExamById(Long id);
+
+    /**
+     * Preguntas de varios examenes en una sola consulta. El mapa tiene una entrada por cada id
+     * pedido; un examen sin preguntas tiene una lista vacia.
+     */
+    Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids);
+
     void saveQuestions(List<String> questions);
 
+    /**
+     * Guarda las preguntas de varios examenes en una sola operacion.
+     */
+    void saveAllQuestions(List<List<String>> questions);
+
 }
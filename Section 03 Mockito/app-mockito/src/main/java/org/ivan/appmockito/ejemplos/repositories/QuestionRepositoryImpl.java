@@ -2,8 +2,12 @@ package org.ivan.appmockito.ejemplos.repositories;
 
 import org.ivan.appmockito.ejemplos.Data;
 import org.ivan.appmockito.ejemplos.models.Exam;
+import org.ivan.appmockito.ejemplos.models.QuestionDictionary;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class QuestionRepositoryImpl implements QuestionRepository {
@@ -15,11 +19,37 @@ public class QuestionRepositoryImpl implements QuestionRepository {
         }catch (Exception e){
 
         }
-        return Data.QUESTIONS;
+        return QuestionDictionary.getDefault().encode(Data.QUESTIONS);
+    }
+
+    @Override
+    public Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids) {
+        System.out.println("QuestionRepositoryImpl.findQuestionsByExamIds");
+        try{
+            TimeUnit.SECONDS.sleep(2);
+        }catch (Exception e){
+
+        }
+        // Todos los examenes comparten la misma lista codificada
+        List<String> encoded = QuestionDictionary.getDefault().encode(Data.QUESTIONS);
+        Map<Long, List<String>> questions = new LinkedHashMap<>();
+        for (Long id : ids) {
+            questions.put(id, encoded);
+        }
+        return questions;
     }
 
     @Override
     public void saveQuestions(List<String> questions) {
         System.out.println("QuestionRepositoryImpl.saveQuestions");
+        QuestionDictionary.getDefault().encode(questions);
+    }
+
+    @Override
+    public void saveAllQuestions(List<List<String>> questions) {
+        System.out.println("QuestionRepositoryImpl.saveAllQuestions");
+        for (List<String> examQuestions : questions) {
+            QuestionDictionary.getDefault().encode(examQuestions);
+        }
     }
 }
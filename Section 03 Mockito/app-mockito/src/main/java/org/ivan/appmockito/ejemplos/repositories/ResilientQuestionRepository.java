@@ -0,0 +1,264 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.exceptions.BulkheadFullException;
+import org.ivan.appmockito.ejemplos.exceptions.RepositoryTimeoutException;
+import org.ivan.appmockito.ejemplos.metrics.LatencyHistogram;
+import org.ivan.appmockito.ejemplos.metrics.LatencySnapshot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorador de {@link QuestionRepository} para que un repositorio lento no deje sin hilos al resto
+ * del servicio. Cada llamada al repositorio se hace en un hilo virtual y quien llama espera como
+ * mucho el {@code timeout}:
+ * <ul>
+ *     <li>Si no hay respuesta a tiempo se interrumpe la llamada y se lanza
+ *     {@link RepositoryTimeoutException}.</li>
+ *     <li>Como mucho hay {@code maxConcurrent} llamadas al repositorio en curso, contando las que ya
+ *     han caducado pero aun no han terminado. Con el cupo lleno se lanza
+ *     {@link BulkheadFullException} sin esperar.</li>
+ *     <li>Con {@code hedgePercentile}, si {@link #findQuestionByExamById(Long)} tarda mas que ese
+ *     percentil de las ultimas respuestas, se lanza una segunda llamada igual y gana la primera que
+ *     responda; la otra se interrumpe. La segunda llamada tambien necesita cupo, y no se lanza hasta
+ *     tener {@value #MIN_HEDGE_SAMPLES} respuestas medidas.</li>
+ * </ul>
+ * Los guardados tienen timeout y cupo pero nunca se repiten. Si caducan pueden terminar guardandose
+ * igualmente.
+ */
+public class ResilientQuestionRepository implements QuestionRepository {
+
+    static final int MIN_HEDGE_SAMPLES = 20;
+    // Calcular el percentil recorre el histograma; no hace falta en cada llamada
+    private static final int HEDGE_REFRESH_EVERY = 32;
+
+    private final QuestionRepository delegate;
+    private final long timeoutNanos;
+    private final int maxConcurrent;
+    private final double hedgePercentile;
+    private final Semaphore permits;
+    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong samples = new AtomicLong();
+    // -1 mientras no hay respuestas suficientes para calcular el percentil
+    private volatile long hedgeDelayNanos = -1;
+
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder timedOutCalls = new LongAdder();
+    private final LongAdder hedgedCalls = new LongAdder();
+
+    public ResilientQuestionRepository(QuestionRepository delegate, Duration timeout, int maxConcurrent) {
+        this(delegate, timeout, maxConcurrent, 0.0);
+    }
+
+    /**
+     * @param hedgePercentile percentil de latencia, por ejemplo {@code 95.0}, a partir del cual se lanza
+     *                        una segunda busqueda; {@code 0} para no lanzarla nunca
+     */
+    public ResilientQuestionRepository(QuestionRepository delegate, Duration timeout, int maxConcurrent,
+                                       double hedgePercentile) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("El timeout debe ser positivo");
+        }
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent debe ser positivo");
+        }
+        if (hedgePercentile < 0.0 || hedgePercentile >= 100.0) {
+            throw new IllegalArgumentException("hedgePercentile debe estar entre 0 y 100");
+        }
+        this.delegate = delegate;
+        this.timeoutNanos = timeout.toNanos();
+        this.maxConcurrent = maxConcurrent;
+        this.hedgePercentile = hedgePercentile;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public List<String> findQuestionByExamById(Long id) {
+        return call(() -> delegate.findQuestionByExamById(id), hedgePercentile > 0.0);
+    }
+
+    @Override
+    public Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids) {
+        return call(() -> delegate.findQuestionsByExamIds(ids), false);
+    }
+
+    @Override
+    public void saveQuestions(List<String> questions) {
+        call(() -> {
+            delegate.saveQuestions(questions);
+            return null;
+        }, false);
+    }
+
+    @Override
+    public void saveAllQuestions(List<List<String>> questions) {
+        call(() -> {
+            delegate.saveAllQuestions(questions);
+            return null;
+        }, false);
+    }
+
+    /**
+     * Latencias de las busquedas por examen que terminaron bien, con las que se calcula el percentil.
+     */
+    public LatencySnapshot latencies() {
+        return latencies.snapshot();
+    }
+
+    /**
+     * Llamadas al repositorio en curso, incluidas las que ya caducaron y aun no han terminado.
+     */
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    public long getTimedOutCalls() {
+        return timedOutCalls.sum();
+    }
+
+    public long getHedgedCalls() {
+        return hedgedCalls.sum();
+    }
+
+    private <T> T call(Supplier<T> task, boolean hedge) {
+        if (!permits.tryAcquire()) {
+            rejectedCalls.increment();
+            throw new BulkheadFullException("Hay " + maxConcurrent + " llamadas en curso al repositorio de preguntas");
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        Attempts<T> attempts = new Attempts<>(task, hedge);
+        attempts.start();
+        try {
+            long delay = hedge ? hedgeDelayNanos : -1;
+            if (delay >= 0 && delay < timeoutNanos) {
+                try {
+                    return attempts.result.get(delay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Sin cupo no se repite: la primera sigue en marcha
+                    if (permits.tryAcquire()) {
+                        hedgedCalls.increment();
+                        attempts.start();
+                    }
+                }
+            }
+            return attempts.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timedOutCalls.increment();
+            throw new RepositoryTimeoutException("El repositorio de preguntas no respondio en "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Espera del repositorio de preguntas interrumpida");
+        } finally {
+            attempts.interruptAll();
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        latencies.record(nanos);
+        long count = samples.incrementAndGet();
+        if (count >= MIN_HEDGE_SAMPLES && (count == MIN_HEDGE_SAMPLES || count % HEDGE_REFRESH_EVERY == 0)) {
+            hedgeDelayNanos = latencies.snapshot().getPercentileNanos(hedgePercentile);
+        }
+    }
+
+    /**
+     * Las llamadas al repositorio para una misma peticion. Cada una ya tiene su permiso del cupo y lo
+     * devuelve al terminar, tambien si la peticion ya estaba resuelta y no llega a llamar.
+     */
+    private final class Attempts<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Supplier<T> task;
+        private final boolean measured;
+        // Intentos que aun pueden responder; un fallo solo cuenta si no queda ninguno
+        private final AtomicInteger pending = new AtomicInteger();
+        private final List<Attempt> started = new ArrayList<>(2);
+
+        private Attempts(Supplier<T> task, boolean measured) {
+            this.task = task;
+            this.measured = measured;
+        }
+
+        private void start() {
+            pending.incrementAndGet();
+            Attempt attempt = new Attempt();
+            started.add(attempt);
+            executor.execute(attempt);
+        }
+
+        private void interruptAll() {
+            for (Attempt attempt : started) {
+                attempt.interrupt();
+            }
+        }
+
+        private final class Attempt implements Runnable {
+            private Thread runner;
+
+            @Override
+            public void run() {
+                try {
+                    synchronized (this) {
+                        if (result.isDone()) {
+                            return;
+                        }
+                        runner = Thread.currentThread();
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        T value = task.get();
+                        if (measured) {
+                            recordLatency(System.nanoTime() - start);
+                        }
+                        result.complete(value);
+                    } catch (Throwable e) {
+                        if (pending.decrementAndGet() == 0) {
+                            result.completeExceptionally(e);
+                        }
+                    } finally {
+                        synchronized (this) {
+                            runner = null;
+                        }
+                    }
+                } finally {
+                    permits.release();
+                }
+            }
+
+            private synchronized void interrupt() {
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.metrics.LatencyHistogram;
+import org.ivan.appmockito.ejemplos.metrics.MetricsRegistry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorador de {@link QuestionRepository} que mide cuanto tarda cada metodo y lo registra en un
+ * {@link MetricsRegistry}, en un histograma por metodo llamado {@code "QuestionRepository.<metodo>"}.
+ * Las llamadas que lanzan una excepcion cuentan como error y la excepcion se relanza tal cual.
+ * El coste por llamada es el mismo que en {@link TimedExamRepository}.
+ */
+public class TimedQuestionRepository implements QuestionRepository {
+
+    public static final String PREFIX = "QuestionRepository.";
+
+    private final QuestionRepository delegate;
+    private final LatencyHistogram findQuestionByExamById;
+    private final LatencyHistogram findQuestionsByExamIds;
+    private final LatencyHistogram saveQuestions;
+    private final LatencyHistogram saveAllQuestions;
+
+    public TimedQuestionRepository(QuestionRepository delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.findQuestionByExamById = registry.histogram(PREFIX + "findQuestionByExamById");
+        this.findQuestionsByExamIds = registry.histogram(PREFIX + "findQuestionsByExamIds");
+        this.saveQuestions = registry.histogram(PREFIX + "saveQuestions");
+        this.saveAllQuestions = registry.histogram(PREFIX + "saveAllQuestions");
+    }
+
+    @Override
+    public List<String> findQuestionByExamById(Long id) {
+        long start = System.nanoTime();
+        try {
+            List<String> questions = delegate.findQuestionByExamById(id);
+            findQuestionByExamById.record(System.nanoTime() - start);
+            return questions;
+        } catch (RuntimeException | Error e) {
+            findQuestionByExamById.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<Long, List<String>> findQuestionsByExamIds(Collection<Long> ids) {
+        long start = System.nanoTime();
+        try {
+            Map<Long, List<String>> questions = delegate.findQuestionsByExamIds(ids);
+            findQuestionsByExamIds.record(System.nanoTime() - start);
+            return questions;
+        } catch (RuntimeException | Error e) {
+            findQuestionsByExamIds.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void saveQuestions(List<String> questions) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveQuestions(questions);
+            saveQuestions.record(System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            saveQuestions.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void saveAllQuestions(List<List<String>> questions) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveAllQuestions(questions);
+            saveAllQuestions.record(System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            saveAllQuestions.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.ivan.appmockito.ejemplos.services;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Version asincrona de {@link ExamService}. Los metodos vuelven enseguida y el trabajo se hace en
+ * otro hilo. Cancelar el future, o que venza un {@code orTimeout}, interrumpe la llamada al
+ * repositorio que este en curso.
+ */
+public interface AsyncExamService {
+
+    CompletableFuture<Optional<Exam>> findExamByName(String nombre);
+
+    CompletableFuture<Exam> findExamByNameWithQuestions(String nombre);
+
+    CompletableFuture<Exam> save(Exam exam);
+}
@@ -0,0 +1,171 @@
+package org.ivan.appmockito.ejemplos.services;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.ivan.appmockito.ejemplos.repositories.ExamRepository;
+import org.ivan.appmockito.ejemplos.repositories.QuestionRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Implementacion de {@link AsyncExamService} sobre los mismos repositorios que {@link ExamServiceImpl}.
+ * Las busquedas por nombre usan el indice de un {@link ExamServiceImpl} interno, asi que solo la
+ * primera paga el findAll. En {@link #save(Exam)} las preguntas y el examen se guardan a la vez; si
+ * una de las dos escrituras falla la otra puede haberse completado.
+ * <p>
+ * Cada llamada a un repositorio corre en el {@link Executor} indicado. Si el future que devuelve
+ * este servicio se cancela o vence su timeout, se cancela tambien la llamada en curso y se
+ * interrumpe el hilo que la esta haciendo.
+ */
+public class AsyncExamServiceImpl implements AsyncExamService {
+
+    private final ExamRepository examRepository;
+    private final QuestionRepository questionRepository;
+    private final Executor executor;
+    private final Duration timeout;
+    private final ExamServiceImpl examService;
+
+    public AsyncExamServiceImpl(ExamRepository examRepository, QuestionRepository questionRepository, Executor executor) {
+        this(examRepository, questionRepository, executor, null);
+    }
+
+    /**
+     * @param timeout tiempo maximo de cada operacion completa; {@code null} para no tener limite
+     */
+    public AsyncExamServiceImpl(ExamRepository examRepository, QuestionRepository questionRepository, Executor executor,
+                                Duration timeout) {
+        this.examRepository = examRepository;
+        this.questionRepository = questionRepository;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.examService = new ExamServiceImpl(examRepository, questionRepository);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Exam>> findExamByName(String nombre) {
+        CompletableFuture<Optional<Exam>> lookup = call(() -> examService.findExamByName(nombre));
+        return withTimeout(lookup);
+    }
+
+    @Override
+    public CompletableFuture<Exam> findExamByNameWithQuestions(String nombre) {
+        CompletableFuture<Exam> result = new CompletableFuture<>();
+        // La llamada en curso, para cancelarla si se cancela el resultado
+        AtomicReference<CompletableFuture<?>> current = new AtomicReference<>();
+        CompletableFuture<Optional<Exam>> lookup = call(() -> examService.findExamByName(nombre));
+        current.set(lookup);
+
+        lookup.whenComplete((examOptional, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (examOptional.isEmpty()) {
+                result.complete(null);
+            } else {
+                Exam exam = examOptional.get();
+                CompletableFuture<Exam> questions = call(() -> {
+                    exam.setPreguntas(questionRepository.findQuestionByExamById(exam.getId()));
+                    return exam;
+                });
+                current.set(questions);
+                questions.whenComplete((loaded, questionsError) -> {
+                    if (questionsError != null) {
+                        result.completeExceptionally(questionsError);
+                    } else {
+                        result.complete(loaded);
+                    }
+                });
+                // Si el resultado se cancelo mientras se cargaba el examen
+                if (result.isDone()) {
+                    questions.cancel(true);
+                }
+            }
+        });
+        result.whenComplete((exam, error) -> {
+            if (error != null) {
+                current.get().cancel(true);
+            }
+        });
+        return withTimeout(result);
+    }
+
+    @Override
+    public CompletableFuture<Exam> save(Exam exam) {
+        CompletableFuture<Void> questions = exam.getPreguntas().isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : call(() -> {
+                    questionRepository.saveQuestions(exam.getPreguntas());
+                    return null;
+                });
+        CompletableFuture<Exam> saved = call(() -> examRepository.save(exam));
+
+        CompletableFuture<Exam> result = questions.thenCombine(saved, (ignored, savedExam) -> {
+            examService.addToIndex(savedExam);
+            return savedExam;
+        });
+        result.whenComplete((savedExam, error) -> {
+            if (error != null) {
+                questions.cancel(true);
+                saved.cancel(true);
+            }
+        });
+        return withTimeout(result);
+    }
+
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future) {
+        return timeout != null ? future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS) : future;
+    }
+
+    // Como supplyAsync, pero cancel(true) interrumpe el hilo que esta ejecutando la tarea
+    private <T> CompletableFuture<T> call(Supplier<T> task) {
+        InterruptibleCall<T> call = new InterruptibleCall<>(task);
+        call.future.whenComplete((value, error) -> {
+            if (error != null) {
+                call.interrupt();
+            }
+        });
+        executor.execute(call);
+        return call.future;
+    }
+
+    private static final class InterruptibleCall<T> implements Runnable {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Supplier<T> task;
+        private Thread runner;
+
+        private InterruptibleCall(Supplier<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (future.isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // Una interrupcion que llego tarde no debe afectar a la siguiente tarea del hilo
+                Thread.interrupted();
+            }
+        }
+
+        private synchronized void interrupt() {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+}
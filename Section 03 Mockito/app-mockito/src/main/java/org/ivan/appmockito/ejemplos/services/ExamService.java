@@ -2,14 +2,34 @@ package org.ivan.appmockito.ejemplos.services;
 
 import org.ivan.appmockito.ejemplos.models.Exam;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ExamService {
 
     Optional<Exam> findExamByName(String nombre);
 
+    /**
+     * Busca varios examenes de una vez. El mapa tiene solo los nombres encontrados, en el
+     * orden en que se pidieron.
+     */
+    Map<String, Exam> findExamsByNames(Collection<String> nombres);
+
     Exam findExamByNameWithQuestions(String nombre);
 
+    /**
+     * Como {@link #findExamByNameWithQuestions(String)} para varios examenes, pero las preguntas de
+     * todos se cargan con una sola llamada al repositorio. Los nombres que no existen se ignoran.
+     */
+    List<Exam> findExamsWithQuestions(Collection<String> nombres);
+
+    /**
+     * Todos los examenes del catalogo con sus preguntas, cargadas en una sola llamada al repositorio.
+     * Con un {@code ParallelQuestionRepository} esa llamada se reparte en llamadas por examen en paralelo.
+     */
+    List<Exam> findAllExamsWithQuestions();
+
     Exam save(Exam exam);
 }
-
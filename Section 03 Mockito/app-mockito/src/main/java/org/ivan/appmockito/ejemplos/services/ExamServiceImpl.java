@@ -4,22 +4,160 @@ import org.ivan.appmockito.ejemplos.models.Exam;
 import org.ivan.appmockito.ejemplos.repositories.ExamRepository;
 import org.ivan.appmockito.ejemplos.repositories.QuestionRepository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class ExamServiceImpl implements ExamService {
 
+    /**
+     * Como se buscan los examenes por nombre.
+     */
+    public enum LookupMode {
+        /**
+         * Con un indice en memoria construido con {@link ExamRepository#findAll()}. Cada busqueda es
+         * inmediata, pero el catalogo entero se queda en memoria.
+         */
+        INDEX,
+        /**
+         * Recorriendo {@link ExamRepository#streamAll()} hasta encontrar lo pedido. No guarda nada en
+         * memoria y no lee mas examenes de los necesarios, pero cada busqueda va al repositorio.
+         */
+        STREAM
+    }
+
     private final ExamRepository examRepository;
     private final QuestionRepository questionRepository;
+    // Indice nombre -> examen; se construye con el primer findAll y se mantiene al dia con save.
+    // Un save con un nombre que ya existe se toma como una actualizacion de ese examen y lo sustituye,
+    // que es lo que devuelve el repositorio en modo STREAM despues de actualizarlo
+    private volatile Map<String, Exam> nameIndex;
+    // Con escritura diferida save solo encola; null mientras no se active
+    private volatile WriteBehindExamWriter writeBehind;
+    private volatile LookupMode lookupMode = LookupMode.INDEX;
 
     public ExamServiceImpl(ExamRepository examRepository, QuestionRepository questionRepository) {
         this.examRepository = examRepository;
         this.questionRepository = questionRepository;
     }
 
+    /**
+     * Cambia la forma de buscar por nombre. Al pasar a {@link LookupMode#STREAM} se descarta el indice.
+     */
+    public synchronized void setLookupMode(LookupMode lookupMode) {
+        this.lookupMode = lookupMode;
+        if (lookupMode == LookupMode.STREAM) {
+            nameIndex = null;
+        }
+    }
+
+    public LookupMode getLookupMode() {
+        return lookupMode;
+    }
+
     @Override
     public Optional<Exam> findExamByName(String nombre) {
-        return examRepository.findAll().stream().filter(exam ->
-                exam.getNombre().equals(nombre)).findFirst();
+        if (nombre == null) {
+            return Optional.empty();
+        }
+        if (lookupMode == LookupMode.STREAM) {
+            // findFirst corta el recorrido en cuanto aparece
+            try (Stream<Exam> exams = examRepository.streamAll()) {
+                return exams.filter(exam -> nombre.equals(exam.getNombre())).findFirst();
+            }
+        }
+        return Optional.ofNullable(nameIndex().get(nombre));
+    }
+
+    @Override
+    public Map<String, Exam> findExamsByNames(Collection<String> nombres) {
+        if (lookupMode == LookupMode.STREAM) {
+            return streamExamsByNames(nombres);
+        }
+        Map<String, Exam> index = nameIndex();
+        Map<String, Exam> encontrados = new LinkedHashMap<>();
+        for (String nombre : nombres) {
+            Exam exam = nombre != null ? index.get(nombre) : null;
+            if (exam != null) {
+                encontrados.put(nombre, exam);
+            }
+        }
+        return encontrados;
+    }
+
+    // Recorre el catalogo una sola vez y para cuando ya tiene todos los nombres pedidos
+    private Map<String, Exam> streamExamsByNames(Collection<String> nombres) {
+        Set<String> pendientes = new HashSet<>();
+        for (String nombre : nombres) {
+            if (nombre != null) {
+                pendientes.add(nombre);
+            }
+        }
+        Map<String, Exam> encontrados = new HashMap<>();
+        if (!pendientes.isEmpty()) {
+            try (Stream<Exam> exams = examRepository.streamAll()) {
+                Iterator<Exam> iterator = exams.iterator();
+                while (!pendientes.isEmpty() && iterator.hasNext()) {
+                    Exam exam = iterator.next();
+                    if (pendientes.remove(exam.getNombre())) {
+                        encontrados.put(exam.getNombre(), exam);
+                    }
+                }
+            }
+        }
+        // Mismo orden que se pidieron, como con el indice
+        Map<String, Exam> ordenados = new LinkedHashMap<>();
+        for (String nombre : nombres) {
+            Exam exam = nombre != null ? encontrados.get(nombre) : null;
+            if (exam != null) {
+                ordenados.put(nombre, exam);
+            }
+        }
+        return ordenados;
+    }
+
+    /**
+     * Descarta el indice de nombres; la siguiente busqueda lo vuelve a construir con findAll.
+     * Hace falta si los examenes cambian sin pasar por {@link #save(Exam)}.
+     */
+    public void refreshIndex() {
+        nameIndex = null;
+    }
+
+    private Map<String, Exam> nameIndex() {
+        Map<String, Exam> index = nameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameIndex;
+                if (index == null) {
+                    index = buildIndex(examRepository.findAll());
+                    nameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    // Con nombres repetidos gana el primero, igual que recorrer la lista con findFirst
+    private static Map<String, Exam> buildIndex(List<Exam> exams) {
+        Map<String, Exam> index = new ConcurrentHashMap<>(Math.max(16, exams.size() * 4 / 3 + 1));
+        for (Exam exam : exams) {
+            if (exam.getNombre() != null) {
+                index.putIfAbsent(exam.getNombre(), exam);
+            }
+        }
+        return index;
     }
 
     @Override
@@ -34,11 +172,100 @@ public class ExamServiceImpl implements ExamService {
         return null;
     }
 
+    @Override
+    public List<Exam> findExamsWithQuestions(Collection<String> nombres) {
+        return loadQuestions(new ArrayList<>(findExamsByNames(nombres).values()));
+    }
+
+    @Override
+    public List<Exam> findAllExamsWithQuestions() {
+        return loadQuestions(new ArrayList<>(examRepository.findAll()));
+    }
+
+    private List<Exam> loadQuestions(List<Exam> exams) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Exam exam : exams) {
+            if (exam.getId() != null) {
+                ids.add(exam.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return exams;
+        }
+        Map<Long, List<String>> questions = questionRepository.findQuestionsByExamIds(ids);
+        for (Exam exam : exams) {
+            if (exam.getId() != null) {
+                exam.setPreguntas(questions.getOrDefault(exam.getId(), List.of()));
+            }
+        }
+        return exams;
+    }
+
+    /**
+     * Activa la escritura diferida: desde ahora {@link #save(Exam)} deja el examen en una cola y
+     * devuelve el mismo examen sin esperar, y se guardan por lotes en segundo plano. Los examenes
+     * entran en el indice de nombres cuando el lote se ha guardado; {@link #flush()} espera a que
+     * se guarde todo lo enviado.
+     *
+     * @see WriteBehindExamWriter
+     */
+    public synchronized void enableWriteBehind(int batchSize, Duration maxDelay, int queueCapacity) {
+        if (writeBehind != null) {
+            throw new IllegalStateException("La escritura diferida ya esta activa");
+        }
+        writeBehind = new WriteBehindExamWriter(examRepository, questionRepository,
+                batchSize, maxDelay, queueCapacity, this::addToIndex);
+    }
+
+    /**
+     * Guarda lo que quede en la cola y vuelve a guardar cada examen en el momento.
+     */
+    public void disableWriteBehind() {
+        WriteBehindExamWriter writer;
+        synchronized (this) {
+            writer = writeBehind;
+            writeBehind = null;
+        }
+        // Fuera del lock: el hilo del escritor llama a addToIndex, que lo necesita para terminar
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Espera a que esten guardados todos los examenes enviados con {@link #save(Exam)}. Sin
+     * escritura diferida no hace nada, porque cada save ya guarda en el momento.
+     */
+    public void flush() {
+        WriteBehindExamWriter writer = writeBehind;
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
     @Override
     public Exam save(Exam exam) {
+        WriteBehindExamWriter writer = writeBehind;
+        if (writer != null) {
+            writer.submit(exam);
+            return exam;
+        }
         if (!exam.getPreguntas().isEmpty()) {
             questionRepository.saveQuestions(exam.getPreguntas());
         }
-        return examRepository.save(exam);
+        Exam saved = examRepository.save(exam);
+        addToIndex(saved);
+        return saved;
+    }
+
+    void addToIndex(Exam saved) {
+        if (saved != null && saved.getNombre() != null) {
+            // Bajo el mismo lock que la construccion, para no perderlo si el indice se esta creando
+            synchronized (this) {
+                if (nameIndex != null) {
+                    nameIndex.put(saved.getNombre(), saved);
+                }
+            }
+        }
     }
 }
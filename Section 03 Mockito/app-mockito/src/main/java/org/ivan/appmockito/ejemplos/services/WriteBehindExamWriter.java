@@ -0,0 +1,269 @@
+package org.ivan.appmockito.ejemplos.services;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.ivan.appmockito.ejemplos.repositories.ExamRepository;
+import org.ivan.appmockito.ejemplos.repositories.QuestionRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Guarda examenes en segundo plano y por lotes. {@link #submit(Exam)} solo deja el examen en una
+ * cola; un hilo los va sacando y los guarda con una llamada a
+ * {@link QuestionRepository#saveAllQuestions(List)} y otra a {@link ExamRepository#saveAll(List)}
+ * por lote. Un lote se escribe cuando junta {@code batchSize} examenes o cuando su primer examen
+ * lleva {@code maxDelay} esperando, lo que pase antes.
+ * <ul>
+ *     <li>Como mucho hay {@code queueCapacity} examenes sin guardar, contando el lote que se esta
+ *     escribiendo; con ese numero, {@link #submit(Exam)} espera a que el hilo termine un lote.</li>
+ *     <li>{@link #flush()} escribe todo lo enviado antes de la llamada y lanza el error si algun lote
+ *     fallo desde el ultimo flush. Los examenes de un lote que falla no se reintentan.</li>
+ *     <li>{@link #close()} hace un ultimo flush y para el hilo. Un {@link #submit(Exam)} a la vez que
+ *     {@code close()} o despues lanza {@link IllegalStateException}: o entra antes del cierre y se guarda,
+ *     o se rechaza, nunca se queda en la cola.</li>
+ * </ul>
+ */
+public class WriteBehindExamWriter implements AutoCloseable {
+
+    private static final Object CLOSE = new Object();
+
+    private final ExamRepository examRepository;
+    private final QuestionRepository questionRepository;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int queueCapacity;
+    private final Consumer<Exam> onSaved;
+
+    // Examenes, marcas de flush y la marca de cierre, en el orden en que llegaron
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    // Un permiso por examen sin guardar; el hilo los devuelve al terminar cada lote
+    private final Semaphore slots;
+    private final Thread writer;
+    // submit y flush encolan con el de lectura; close marca el cierre con el de escritura, asi nada
+    // se encola despues de la marca de cierre
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    // Solo lo toca el hilo que escribe
+    private Throwable failure;
+
+    public WriteBehindExamWriter(ExamRepository examRepository, QuestionRepository questionRepository,
+                                 int batchSize, Duration maxDelay, int queueCapacity) {
+        this(examRepository, questionRepository, batchSize, maxDelay, queueCapacity, exam -> {
+        });
+    }
+
+    WriteBehindExamWriter(ExamRepository examRepository, QuestionRepository questionRepository,
+                          int batchSize, Duration maxDelay, int queueCapacity, Consumer<Exam> onSaved) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize debe ser positivo");
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("maxDelay debe ser positivo");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity debe ser positivo");
+        }
+        this.examRepository = examRepository;
+        this.questionRepository = questionRepository;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.onSaved = onSaved;
+        this.queueCapacity = queueCapacity;
+        this.slots = new Semaphore(queueCapacity);
+        this.writer = new Thread(this::run, "exam-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Deja el examen en la cola para guardarlo en el siguiente lote. Si la cola esta llena espera.
+     */
+    public void submit(Exam exam) {
+        if (exam == null) {
+            throw new IllegalArgumentException("El examen no puede ser null");
+        }
+        if (closed) {
+            throw new IllegalStateException("El escritor esta cerrado");
+        }
+        // Se espera sitio fuera del lock para no retrasar un close mientras la cola esta llena
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Espera para encolar el examen interrumpida");
+        }
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                slots.release();
+                throw new IllegalStateException("El escritor esta cerrado");
+            }
+            queue.add(exam);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera a que esten guardados todos los examenes enviados antes de la llamada. Si algun lote
+     * fallo desde el ultimo flush lanza {@link IllegalStateException} con el error como causa.
+     * Despues de {@link #close()} no hace nada: los errores de los ultimos lotes los lanza close.
+     */
+    public void flush() {
+        Checkpoint checkpoint = new Checkpoint();
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            queue.add(checkpoint);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        await(checkpoint);
+    }
+
+    /**
+     * Numero de examenes enviados que aun no se han guardado, incluido el lote en curso.
+     */
+    public int pending() {
+        return queueCapacity - slots.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        Checkpoint last = new Checkpoint();
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(last);
+            queue.add(CLOSE);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            await(last);
+        } finally {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void await(Checkpoint checkpoint) {
+        try {
+            checkpoint.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Espera del flush interrumpida");
+        }
+        if (checkpoint.failure != null) {
+            throw new IllegalStateException("No se pudieron guardar algunos examenes", checkpoint.failure);
+        }
+    }
+
+    private void run() {
+        List<Exam> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (item instanceof Exam) {
+                    batch.add((Exam) item);
+                    if (batch.size() == batchSize) {
+                        item = null;
+                        break;
+                    }
+                    item = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                // Nadie interrumpe este hilo salvo al apagar la JVM
+                return;
+            }
+            write(batch);
+            slots.release(batch.size());
+            batch.clear();
+
+            if (item instanceof Checkpoint) {
+                complete((Checkpoint) item);
+            } else if (item == CLOSE) {
+                drainAfterClose(batch);
+                return;
+            }
+        }
+    }
+
+    private void complete(Checkpoint checkpoint) {
+        checkpoint.failure = failure;
+        failure = null;
+        checkpoint.done.countDown();
+    }
+
+    // Con el lock de cierre no deberia llegar nada despues de CLOSE; si llegara, se guarda igualmente
+    // para no perder examenes ni sus permisos, y nadie se queda esperando un flush
+    private void drainAfterClose(List<Exam> batch) {
+        List<Object> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Object item : rest) {
+            if (item instanceof Exam) {
+                batch.add((Exam) item);
+            }
+        }
+        write(batch);
+        slots.release(batch.size());
+        for (Object item : rest) {
+            if (item instanceof Checkpoint) {
+                complete((Checkpoint) item);
+            }
+        }
+    }
+
+    private void write(List<Exam> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<List<String>> questions = new ArrayList<>();
+            for (Exam exam : batch) {
+                if (!exam.getPreguntas().isEmpty()) {
+                    questions.add(exam.getPreguntas());
+                }
+            }
+            if (!questions.isEmpty()) {
+                questionRepository.saveAllQuestions(questions);
+            }
+            for (Exam saved : examRepository.saveAll(new ArrayList<>(batch))) {
+                onSaved.accept(saved);
+            }
+        } catch (RuntimeException | Error e) {
+            // Tambien los Error: si el hilo muriera, los flush pendientes no terminarian nunca
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private static final class Checkpoint {
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Se escribe antes del countDown y se lee despues del await
+        private Throwable failure;
+    }
+}
@@ -0,0 +1,78 @@
+package org.ivan.appmockito.ejemplos.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de LatencyHistogram: tramos, precision de los percentiles y suma de histogramas.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverEveryValue() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKETS);
+            assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..1000 microsegundos
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        histogram.recordError(2_000_000);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1001, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount());
+        assertEquals(2_000_000, snapshot.getMaxNanos());
+        assertEquals(2_000_000, snapshot.getPercentileNanos(100.0));
+        // Como mucho un 6,25% por encima del valor exacto, nunca por debajo
+        assertWithinBucket(501_000, snapshot.getP50Nanos());
+        assertWithinBucket(901_000, snapshot.getP90Nanos());
+        assertWithinBucket(991_000, snapshot.getP99Nanos());
+    }
+
+    @Test
+    void testMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(100);
+        a.recordError(300);
+        b.record(5_000);
+
+        a.merge(b);
+
+        LatencySnapshot snapshot = a.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount());
+        assertEquals(5_000, snapshot.getMaxNanos());
+        assertEquals(1_800.0, snapshot.getMeanNanos(), 0.001);
+        // El otro no cambia
+        assertEquals(1, b.snapshot().getCount());
+    }
+
+    @Test
+    void testEmpty() {
+        LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP99Nanos());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentileNanos(101));
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.0625, "esperado ~" + expected + " y fue " + actual);
+    }
+}
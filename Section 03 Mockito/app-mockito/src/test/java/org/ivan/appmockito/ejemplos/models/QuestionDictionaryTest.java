@@ -0,0 +1,75 @@
+package org.ivan.appmockito.ejemplos.models;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del diccionario de preguntas. Se usa un diccionario propio para no depender de lo que
+ * hayan registrado otras pruebas en el diccionario por defecto.
+ */
+class QuestionDictionaryTest {
+
+    @Test
+    void testEncodeStoresEachQuestionOnce() {
+        QuestionDictionary dictionary = new QuestionDictionary();
+
+        List<String> first = dictionary.encode(Data.QUESTIONS);
+        List<String> second = dictionary.encode(List.of("algebra", "geometry", "algebra"));
+
+        assertEquals(Data.QUESTIONS, first);
+        assertEquals(List.of("algebra", "geometry", "algebra"), second);
+        assertEquals(6, dictionary.size());
+        // Las dos listas devuelven el mismo objeto String para la misma pregunta
+        assertSame(first.get(1), second.get(0));
+        // Una lista ya codificada no se vuelve a codificar
+        assertSame(first, dictionary.encode(first));
+        assertThrows(UnsupportedOperationException.class, () -> first.add("calculus"));
+    }
+
+    @Test
+    void testExamUsesDictionary() {
+        List<String> preguntas = new ArrayList<>(Data.QUESTIONS);
+        Exam exam = new Exam(1L, "Matematicas");
+        assertTrue(exam.getPreguntas().isEmpty());
+
+        exam.setPreguntas(preguntas);
+        preguntas.clear();
+
+        assertEquals(Data.QUESTIONS, exam.getPreguntas());
+        Exam other = new Exam(2L, "Algebra");
+        other.setPreguntas(exam.getPreguntas());
+        assertSame(exam.getPreguntas(), other.getPreguntas());
+    }
+
+    @Test
+    void testNullQuestions() {
+        QuestionDictionary dictionary = new QuestionDictionary();
+
+        List<String> encoded = dictionary.encode(Arrays.asList("algebra", null, "algebra"));
+
+        assertEquals(Arrays.asList("algebra", null, "algebra"), encoded);
+        assertNull(encoded.get(1));
+        assertEquals(1, dictionary.size());
+        assertNull(dictionary.encode(null));
+    }
+
+    @Test
+    void testExamQuestionsAreReadOnly() {
+        Exam exam = new Exam(1L, "Matematicas");
+
+        exam.setPreguntas(null);
+        assertNull(exam.getPreguntas());
+
+        exam.setPreguntas(Arrays.asList("algebra", null));
+        assertEquals(Arrays.asList("algebra", null), exam.getPreguntas());
+        // Para cambiar las preguntas hay que volver a llamar a setPreguntas
+        assertThrows(UnsupportedOperationException.class, () -> exam.getPreguntas().add("calculus"));
+        assertThrows(UnsupportedOperationException.class, () -> new Exam(2L, "Historia").getPreguntas().add("calculus"));
+    }
+}
@@ -0,0 +1,125 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de CachingExamRepository con un repositorio simulado y un reloj controlado por el test.
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingExamRepositoryTest {
+
+    @Mock
+    ExamRepository examRepository;
+
+    AtomicLong clock = new AtomicLong();
+
+    CachingExamRepository cachingRepository;
+
+    @BeforeEach
+    void setUp() {
+        cachingRepository = new CachingExamRepository(examRepository, Duration.ofSeconds(10), 100, clock::get);
+    }
+
+    @Test
+    void testFindAllFromCache() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+
+        List<Exam> first = cachingRepository.findAll();
+        List<Exam> second = cachingRepository.findAll();
+
+        assertEquals(Data.DATA_EXAM, first);
+        assertSame(first, second);
+        // Solo la primera llamada llega al repositorio
+        verify(examRepository, times(1)).findAll();
+        CacheStats stats = cachingRepository.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getLoadCount());
+    }
+
+    @Test
+    void testStreamAllUsesCachedFindAll() {
+        when(examRepository.streamAll()).then(invocation -> Data.DATA_EXAM.stream());
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+
+        // Sin findAll guardado el stream va al repositorio y no se guarda
+        assertEquals(3, cachingRepository.streamAll().count());
+        cachingRepository.findAll();
+        assertEquals(Data.DATA_EXAM, cachingRepository.streamAll().toList());
+
+        verify(examRepository, times(1)).streamAll();
+        verify(examRepository, times(1)).findAll();
+        // El stream que va al repositorio cuenta como fallo, igual que la carga de findAll
+        CacheStats stats = cachingRepository.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getLoadCount());
+    }
+
+    @Test
+    void testNullElementsAreCached() {
+        when(examRepository.findAll()).thenReturn(Arrays.asList(Data.DATA_EXAM.get(0), null));
+
+        List<Exam> first = cachingRepository.findAll();
+
+        assertEquals(Arrays.asList(Data.DATA_EXAM.get(0), null), first);
+        assertSame(first, cachingRepository.findAll());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(null));
+        assertEquals(2, cachingRepository.streamAll().count());
+        verify(examRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testTtlExpires() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+
+        cachingRepository.findAll();
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        cachingRepository.findAll();
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        cachingRepository.findAll();
+
+        verify(examRepository, times(2)).findAll();
+        assertEquals(1, cachingRepository.stats().getHits());
+    }
+
+    @Test
+    void testSaveInvalidates() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(examRepository.save(any(Exam.class))).thenReturn(Data.EXAM);
+
+        cachingRepository.findAll();
+        assertSame(Data.EXAM, cachingRepository.save(Data.EXAM));
+        cachingRepository.findAll();
+
+        verify(examRepository, times(2)).findAll();
+        verify(examRepository).save(Data.EXAM);
+    }
+
+    @Test
+    void testResultBiggerThanMaxIsNotCached() {
+        cachingRepository = new CachingExamRepository(examRepository, Duration.ofSeconds(10), 2, clock::get);
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+
+        cachingRepository.findAll();
+        cachingRepository.findAll();
+
+        verify(examRepository, times(2)).findAll();
+        assertEquals(0, cachingRepository.stats().getHits());
+        assertEquals(2, cachingRepository.stats().getEvictions());
+    }
+}
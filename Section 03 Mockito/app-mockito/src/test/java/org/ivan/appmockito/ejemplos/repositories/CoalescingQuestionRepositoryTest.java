@@ -0,0 +1,99 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de CoalescingQuestionRepository. El repositorio simulado se queda bloqueado hasta que
+ * todos los hilos estan esperando, asi se comprueba que comparten una sola llamada.
+ */
+@ExtendWith(MockitoExtension.class)
+class CoalescingQuestionRepositoryTest {
+
+    private static final int THREADS = 10;
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    ExecutorService executor;
+
+    CoalescingQuestionRepository coalescingRepository;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        coalescingRepository = new CoalescingQuestionRepository(questionRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return Data.QUESTIONS;
+        });
+
+        List<Future<List<String>>> results = startCalls();
+        waitForCoalescedCalls(THREADS - 1);
+        release.countDown();
+
+        for (Future<List<String>> result : results) {
+            assertEquals(Data.QUESTIONS, result.get(10, TimeUnit.SECONDS));
+        }
+        verify(questionRepository, times(1)).findQuestionByExamById(1L);
+    }
+
+    @Test
+    void testFailureIsSharedButNotCached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            throw new IllegalStateException("backend caido");
+        }).thenReturn(Data.QUESTIONS);
+
+        List<Future<List<String>>> results = startCalls();
+        waitForCoalescedCalls(THREADS - 1);
+        release.countDown();
+
+        for (Future<List<String>> result : results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertEquals("backend caido", exception.getCause().getMessage());
+        }
+        // El error no se guarda: la siguiente busqueda vuelve al repositorio
+        assertEquals(Data.QUESTIONS, coalescingRepository.findQuestionByExamById(1L));
+        verify(questionRepository, times(2)).findQuestionByExamById(1L);
+    }
+
+    private List<Future<List<String>>> startCalls() {
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> coalescingRepository.findQuestionByExamById(1L)));
+        }
+        return results;
+    }
+
+    private void waitForCoalescedCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescingRepository.getCoalescedCalls() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, coalescingRepository.getCoalescedCalls());
+    }
+}
@@ -0,0 +1,65 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas del recorrido por paginas de ExamPage y del cursor de ExamRepositoryImpl.
+ */
+@ExtendWith(MockitoExtension.class)
+class ExamPageTest {
+
+    @Mock
+    ExamRepository examRepository;
+
+    @Test
+    void testStreamReadsPagesOnDemand() {
+        when(examRepository.findPage(null, 2)).thenReturn(new ExamPage(List.of(new Exam(1L, "Matematicas"), new Exam(2L, "Historia")), "2"));
+        when(examRepository.findPage("2", 2)).thenReturn(new ExamPage(List.of(), "4"));
+        when(examRepository.findPage("4", 2)).thenReturn(new ExamPage(List.of(new Exam(5L, "Geografia")), null));
+
+        // Lo encuentra en la primera pagina: no se piden las demas
+        Optional<Exam> historia = ExamPage.stream(examRepository, 2).filter(exam -> exam.getNombre().equals("Historia")).findFirst();
+        assertEquals(2L, historia.orElseThrow().getId());
+        verify(examRepository, times(1)).findPage(any(), anyInt());
+
+        // Recorrido completo, saltando la pagina vacia
+        List<String> nombres = ExamPage.stream(examRepository, 2).map(Exam::getNombre).collect(Collectors.toList());
+        assertEquals(List.of("Matematicas", "Historia", "Geografia"), nombres);
+        verify(examRepository, times(4)).findPage(any(), anyInt());
+    }
+
+    @Test
+    void testExamRepositoryImplCursor() {
+        ExamRepository repository = new ExamRepositoryImpl();
+
+        List<Exam> exams = new ArrayList<>();
+        int pages = 0;
+        String cursor = null;
+        do {
+            ExamPage page = repository.findPage(cursor, 2);
+            exams.addAll(page.getExams());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(2, pages);
+        assertEquals(Data.DATA_EXAM, exams);
+        try (Stream<Exam> stream = repository.streamAll()) {
+            assertEquals(Data.DATA_EXAM, stream.collect(Collectors.toList()));
+        }
+    }
+}
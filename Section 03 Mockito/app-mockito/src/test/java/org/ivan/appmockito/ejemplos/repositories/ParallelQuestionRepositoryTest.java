@@ -0,0 +1,90 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de ParallelQuestionRepository: limite de concurrencia, orden del resultado y errores.
+ */
+@ExtendWith(MockitoExtension.class)
+class ParallelQuestionRepositoryTest {
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    @Test
+    void testFanOutRespectsLimitAndOrder() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(questionRepository.findQuestionByExamById(anyLong())).then(invocation -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            Long id = invocation.getArgument(0);
+            return List.of("pregunta " + id);
+        });
+        List<Long> ids = new ArrayList<>();
+        for (long id = 20; id > 0; id--) {
+            ids.add(id);
+        }
+
+        Map<Long, List<String>> questions = new ParallelQuestionRepository(questionRepository, 4).findQuestionsByExamIds(ids);
+
+        assertEquals(ids, List.copyOf(questions.keySet()));
+        assertEquals(List.of("pregunta 7"), questions.get(7L));
+        assertTrue(maxRunning.get() <= 4, () -> "Llamadas a la vez: " + maxRunning.get());
+        assertTrue(maxRunning.get() > 1, "Las llamadas no se hicieron en paralelo");
+        verify(questionRepository, times(20)).findQuestionByExamById(anyLong());
+    }
+
+    @Test
+    void testFailurePropagates() {
+        when(questionRepository.findQuestionByExamById(anyLong())).thenReturn(List.of("algebra"));
+        when(questionRepository.findQuestionByExamById(3L)).thenThrow(new IllegalArgumentException("examen 3"));
+
+        ParallelQuestionRepository repository = new ParallelQuestionRepository(questionRepository, 2);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> repository.findQuestionsByExamIds(List.of(1L, 2L, 3L, 4L)));
+        assertEquals("examen 3", exception.getMessage());
+    }
+
+    @Test
+    void testFailureCancelsSlowerCalls() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        // El primer id no responde hasta que lo interrumpen; el segundo falla enseguida
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return List.of("algebra");
+        });
+        when(questionRepository.findQuestionByExamById(2L)).thenThrow(new IllegalArgumentException("examen 2"));
+
+        ParallelQuestionRepository repository = new ParallelQuestionRepository(questionRepository, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> repository.findQuestionsByExamIds(List.of(1L, 2L)));
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(interrupted.get(), "La llamada lenta no se cancelo al fallar la otra");
+    }
+}
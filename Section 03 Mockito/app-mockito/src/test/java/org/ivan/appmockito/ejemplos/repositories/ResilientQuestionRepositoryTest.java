@@ -0,0 +1,137 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.exceptions.BulkheadFullException;
+import org.ivan.appmockito.ejemplos.exceptions.RepositoryTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de ResilientQuestionRepository. Las llamadas lentas se simulan con un repositorio que
+ * espera a un latch, asi se sabe exactamente cuales estan en curso.
+ */
+@ExtendWith(MockitoExtension.class)
+class ResilientQuestionRepositoryTest {
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    CountDownLatch release;
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        release = new CountDownLatch(1);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testTimeoutInterruptsCall() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return Data.QUESTIONS;
+        });
+        ResilientQuestionRepository repository = new ResilientQuestionRepository(questionRepository, Duration.ofMillis(50), 5);
+
+        assertThrows(RepositoryTimeoutException.class, () -> repository.findQuestionByExamById(1L));
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertEquals(1, repository.getTimedOutCalls());
+        waitUntilIdle(repository);
+    }
+
+    @Test
+    void testBulkheadRejectsWhenFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Data.QUESTIONS;
+        });
+        ResilientQuestionRepository repository = new ResilientQuestionRepository(questionRepository, Duration.ofSeconds(10), 1);
+
+        Future<List<String>> first = executor.submit(() -> repository.findQuestionByExamById(1L));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Con el cupo lleno no espera ni llega al repositorio
+        assertThrows(BulkheadFullException.class, () -> repository.findQuestionByExamById(2L));
+        assertEquals(1, repository.getRejectedCalls());
+        verify(questionRepository, never()).findQuestionByExamById(2L);
+
+        release.countDown();
+        assertEquals(Data.QUESTIONS, first.get(10, TimeUnit.SECONDS));
+        waitUntilIdle(repository);
+    }
+
+    @Test
+    void testHedgedCallWins() throws Exception {
+        AtomicInteger slowCalls = new AtomicInteger();
+        when(questionRepository.findQuestionByExamById(1L)).thenReturn(Data.QUESTIONS);
+        when(questionRepository.findQuestionByExamById(2L)).then(invocation -> {
+            // La primera llamada se queda colgada; la repetida responde enseguida
+            if (slowCalls.getAndIncrement() == 0) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return List.of("rios");
+        });
+        ResilientQuestionRepository repository = new ResilientQuestionRepository(questionRepository, Duration.ofSeconds(10), 5, 90.0);
+        for (int i = 0; i < ResilientQuestionRepository.MIN_HEDGE_SAMPLES; i++) {
+            repository.findQuestionByExamById(1L);
+        }
+
+        assertEquals(List.of("rios"), repository.findQuestionByExamById(2L));
+
+        assertEquals(1, repository.getHedgedCalls());
+        verify(questionRepository, times(2)).findQuestionByExamById(2L);
+        // La que se quedo colgada se interrumpe y devuelve su cupo
+        waitUntilIdle(repository);
+    }
+
+    @Test
+    void testFailureIsRethrown() {
+        when(questionRepository.findQuestionByExamById(1L)).thenThrow(new IllegalStateException("backend caido"));
+        ResilientQuestionRepository repository = new ResilientQuestionRepository(questionRepository, Duration.ofSeconds(10), 5, 90.0);
+
+        // Sin respuestas medidas no se repite: el error llega tal cual
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> repository.findQuestionByExamById(1L));
+        assertEquals("backend caido", exception.getMessage());
+        assertEquals(0, repository.getHedgedCalls());
+        assertEquals(0, repository.latencies().getCount());
+    }
+
+    private static void waitUntilIdle(ResilientQuestionRepository repository) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (repository.inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, repository.inFlight());
+    }
+}
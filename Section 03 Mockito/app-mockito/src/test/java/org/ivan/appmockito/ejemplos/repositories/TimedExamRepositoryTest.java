@@ -0,0 +1,86 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.metrics.LatencySnapshot;
+import org.ivan.appmockito.ejemplos.metrics.MetricsRegistry;
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de TimedExamRepository: cada metodo deja una medida en su histograma, tanto si el
+ * repositorio responde como si lanza una excepcion.
+ */
+@ExtendWith(MockitoExtension.class)
+class TimedExamRepositoryTest {
+
+    private static final List<String> METHODS = List.of("save", "saveAll", "findAll", "streamAll", "findPage");
+
+    @Mock
+    ExamRepository examRepository;
+
+    MetricsRegistry registry;
+
+    ExamRepository timed;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MetricsRegistry();
+        timed = new TimedExamRepository(examRepository, registry);
+    }
+
+    @Test
+    void testRecordsEveryMethod() {
+        ExamPage page = new ExamPage(Data.DATA_EXAM, null);
+        when(examRepository.save(Data.EXAM)).thenReturn(Data.EXAM);
+        when(examRepository.saveAll(Data.DATA_EXAM)).thenReturn(Data.DATA_EXAM);
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(examRepository.streamAll()).then(invocation -> Data.DATA_EXAM.stream());
+        when(examRepository.findPage(null, 10)).thenReturn(page);
+
+        assertSame(Data.EXAM, timed.save(Data.EXAM));
+        assertSame(Data.DATA_EXAM, timed.saveAll(Data.DATA_EXAM));
+        assertSame(Data.DATA_EXAM, timed.findAll());
+        assertEquals(Data.DATA_EXAM, timed.streamAll().toList());
+        assertSame(page, timed.findPage(null, 10));
+
+        for (String method : METHODS) {
+            LatencySnapshot snapshot = registry.snapshot(TimedExamRepository.PREFIX + method).orElseThrow();
+            assertEquals(1, snapshot.getCount(), method);
+            assertEquals(0, snapshot.getErrorCount(), method);
+        }
+    }
+
+    @Test
+    void testRecordsErrorsOfEveryMethod() {
+        IllegalStateException failure = new IllegalStateException("backend caido");
+        when(examRepository.save(any(Exam.class))).thenThrow(failure);
+        when(examRepository.saveAll(anyList())).thenThrow(failure);
+        when(examRepository.findAll()).thenThrow(failure);
+        when(examRepository.streamAll()).thenThrow(failure);
+        when(examRepository.findPage(any(), anyInt())).thenThrow(failure);
+
+        // La excepcion se relanza sin envolver
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> timed.save(Data.EXAM)));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> timed.saveAll(Data.DATA_EXAM)));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> timed.findAll()));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> timed.streamAll()));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> timed.findPage("3", 10)));
+
+        Map<String, LatencySnapshot> snapshots = registry.snapshots(TimedExamRepository.PREFIX);
+        for (String method : METHODS) {
+            LatencySnapshot snapshot = snapshots.get(TimedExamRepository.PREFIX + method);
+            assertEquals(1, snapshot.getCount(), method);
+            assertEquals(1, snapshot.getErrorCount(), method);
+        }
+    }
+}
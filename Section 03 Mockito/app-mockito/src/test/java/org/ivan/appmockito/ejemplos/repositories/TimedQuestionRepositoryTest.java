@@ -0,0 +1,77 @@
+package org.ivan.appmockito.ejemplos.repositories;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.metrics.LatencySnapshot;
+import org.ivan.appmockito.ejemplos.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de los decoradores que miden tiempos y del registro donde dejan los datos.
+ */
+@ExtendWith(MockitoExtension.class)
+class TimedQuestionRepositoryTest {
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    @Mock
+    ExamRepository examRepository;
+
+    MetricsRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    void testRecordsCallsAndErrors() {
+        when(questionRepository.findQuestionByExamById(1L)).thenReturn(Data.QUESTIONS);
+        when(questionRepository.findQuestionByExamById(2L)).thenThrow(new IllegalStateException("backend caido"));
+        QuestionRepository timed = new TimedQuestionRepository(questionRepository, registry);
+
+        assertEquals(Data.QUESTIONS, timed.findQuestionByExamById(1L));
+        assertEquals(Data.QUESTIONS, timed.findQuestionByExamById(1L));
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> timed.findQuestionByExamById(2L));
+        assertEquals("backend caido", exception.getMessage());
+        timed.saveQuestions(List.of("algebra"));
+
+        LatencySnapshot find = registry.snapshot("QuestionRepository.findQuestionByExamById").orElseThrow();
+        assertEquals(3, find.getCount());
+        assertEquals(1, find.getErrorCount());
+        assertTrue(find.getMaxNanos() >= find.getP50Nanos());
+        assertEquals(1, registry.snapshot("QuestionRepository.saveQuestions").orElseThrow().getCount());
+        verify(questionRepository).saveQuestions(List.of("algebra"));
+    }
+
+    @Test
+    void testRegistryQueriesByPrefix() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(questionRepository.findQuestionByExamById(anyLong())).thenReturn(Data.QUESTIONS);
+        ExamRepository timedExams = new TimedExamRepository(examRepository, registry);
+        QuestionRepository timedQuestions = new TimedQuestionRepository(questionRepository, registry);
+
+        timedExams.findAll();
+        timedQuestions.findQuestionByExamById(1L);
+        timedQuestions.findQuestionByExamById(2L);
+
+        // Cada decorador registra todos sus metodos al crearse, aunque no se hayan llamado
+        SortedMap<String, LatencySnapshot> exams = registry.snapshots(TimedExamRepository.PREFIX);
+        assertEquals(List.of("ExamRepository.findAll", "ExamRepository.findPage", "ExamRepository.save",
+                "ExamRepository.saveAll", "ExamRepository.streamAll"), List.copyOf(exams.keySet()));
+        assertEquals(1, exams.get("ExamRepository.findAll").getCount());
+        assertEquals(2, registry.merged(TimedQuestionRepository.PREFIX).getCount());
+        assertEquals(3, registry.merged("").getCount());
+        assertTrue(registry.snapshot("QuestionRepository.noExiste").isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package org.ivan.appmockito.ejemplos.services;
+
+import org.ivan.appmockito.ejemplos.Data;
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.ivan.appmockito.ejemplos.repositories.ExamRepository;
+import org.ivan.appmockito.ejemplos.repositories.QuestionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de AsyncExamServiceImpl. Los repositorios simulados se coordinan con latches en lugar
+ * de medir tiempos, asi las pruebas no dependen de la velocidad de la maquina.
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncExamServiceImplTest {
+
+    @Mock
+    ExamRepository examRepository;
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    ExecutorService executor;
+
+    AsyncExamService asyncService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+        asyncService = new AsyncExamServiceImpl(examRepository, questionRepository, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFindExamByNameWithQuestions() throws Exception {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(questionRepository.findQuestionByExamById(2L)).thenReturn(Data.QUESTIONS);
+
+        Exam exam = asyncService.findExamByNameWithQuestions("Historia").get(5, TimeUnit.SECONDS);
+        assertEquals(2L, exam.getId());
+        assertEquals(Data.QUESTIONS, exam.getPreguntas());
+        assertNull(asyncService.findExamByNameWithQuestions("Quimica").get(5, TimeUnit.SECONDS));
+
+        // El indice se construye una vez para las dos busquedas
+        verify(examRepository, times(1)).findAll();
+        verify(questionRepository, never()).findQuestionByExamById(1L);
+    }
+
+    @Test
+    void testSaveRunsWritesConcurrently() throws Exception {
+        Exam exam = new Exam(null, "Quimica");
+        exam.setPreguntas(List.of("enlaces", "moles"));
+        // Cada escritura espera a la otra; solo terminan si corren a la vez
+        CountDownLatch both = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            both.countDown();
+            assertTrue(both.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(questionRepository).saveQuestions(anyList());
+        when(examRepository.save(exam)).then(invocation -> {
+            both.countDown();
+            assertTrue(both.await(5, TimeUnit.SECONDS));
+            exam.setId(10L);
+            return exam;
+        });
+
+        Exam saved = asyncService.save(exam).get(10, TimeUnit.SECONDS);
+
+        assertEquals(10L, saved.getId());
+        verify(questionRepository).saveQuestions(exam.getPreguntas());
+    }
+
+    @Test
+    void testCancelInterruptsRepository() throws Exception {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(questionRepository.findQuestionByExamById(1L)).then(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Data.QUESTIONS;
+        });
+
+        CompletableFuture<Exam> future = asyncService.findExamByNameWithQuestions("Matematicas");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void testTimeoutInterruptsRepository() throws Exception {
+        asyncService = new AsyncExamServiceImpl(examRepository, questionRepository, executor, Duration.ofMillis(200));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(examRepository.findAll()).then(invocation -> {
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Data.DATA_EXAM;
+        });
+
+        CompletableFuture<Exam> future = asyncService.findExamByNameWithQuestions("Matematicas");
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        verifyNoInteractions(questionRepository);
+    }
+}
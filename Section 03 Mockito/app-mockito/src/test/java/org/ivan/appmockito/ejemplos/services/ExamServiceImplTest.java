@@ -14,8 +14,11 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -65,6 +68,142 @@ class ExamServiceImplTest {
     }
 
 
+    @Test
+    void findExamByNameUsesIndex() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        // Varias busquedas solo cargan los examenes una vez
+        assertEquals(1L, examService.findExamByName("Matematicas").orElseThrow().getId());
+        assertEquals(2L, examService.findExamByName("Historia").orElseThrow().getId());
+        assertFalse(examService.findExamByName("Quimica").isPresent());
+        assertFalse(examService.findExamByName(null).isPresent());
+
+        verify(examRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findExamsByNames() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+
+        Map<String, Exam> exams = examService.findExamsByNames(List.of("Geografia", "Quimica", "Matematicas"));
+
+        assertEquals(List.of("Geografia", "Matematicas"), List.copyOf(exams.keySet()));
+        assertEquals(3L, exams.get("Geografia").getId());
+        verify(examRepository, times(1)).findAll();
+    }
+
+    @Test
+    void saveUpdatesIndex() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(examRepository.save(any(Exam.class))).then(invocation -> invocation.getArgument(0));
+        examService.findExamByName("Matematicas");
+
+        Exam quimica = new Exam(4L, "Quimica");
+        examService.save(quimica);
+
+        assertSame(quimica, examService.findExamByName("Quimica").orElseThrow());
+        verify(examRepository, times(1)).findAll();
+
+        // Tras refrescar se vuelve a leer el repositorio, que no tiene el examen nuevo
+        examService.refreshIndex();
+        assertFalse(examService.findExamByName("Quimica").isPresent());
+        verify(examRepository, times(2)).findAll();
+    }
+
+    @Test
+    void resaveSameNameReplacesExamInBothModes() {
+        // Repositorio que, como uno real, actualiza el examen con el mismo nombre
+        List<Exam> stored = new ArrayList<>(Data.DATA_EXAM);
+        when(examRepository.findAll()).then(invocation -> List.copyOf(stored));
+        when(examRepository.streamAll()).then(invocation -> stored.stream());
+        when(examRepository.save(any(Exam.class))).then(invocation -> {
+            Exam exam = invocation.getArgument(0);
+            stored.replaceAll(old -> old.getNombre().equals(exam.getNombre()) ? exam : old);
+            return exam;
+        });
+        examService.findExamByName("Matematicas");
+
+        Exam matematicas = new Exam(1L, "Matematicas");
+        examService.save(matematicas);
+
+        assertSame(matematicas, examService.findExamByName("Matematicas").orElseThrow());
+        examService.setLookupMode(ExamServiceImpl.LookupMode.STREAM);
+        assertSame(matematicas, examService.findExamByName("Matematicas").orElseThrow());
+        verify(examRepository, times(1)).findAll();
+    }
+
+    @Test
+    void saveWriteBehindUntilFlush() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(examRepository.saveAll(anyList())).then(invocation -> invocation.getArgument(0));
+        examService.findExamByName("Matematicas");
+
+        examService.enableWriteBehind(10, Duration.ofHours(1), 100);
+        try {
+            Exam quimica = new Exam(4L, "Quimica");
+            quimica.setPreguntas(Data.QUESTIONS);
+            assertSame(quimica, examService.save(quimica));
+            examService.save(new Exam(5L, "Biologia"));
+
+            examService.flush();
+            // Un solo lote con los dos examenes y solo las preguntas del que tiene
+            verify(examRepository).saveAll(argThat(exams -> exams.size() == 2));
+            verify(questionRepository).saveAllQuestions(List.of(Data.QUESTIONS));
+            verify(examRepository, never()).save(any(Exam.class));
+            assertSame(quimica, examService.findExamByName("Quimica").orElseThrow());
+        } finally {
+            examService.disableWriteBehind();
+        }
+    }
+
+    @Test
+    void disableWriteBehindSavesQueuedExams() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(examRepository.saveAll(anyList())).then(invocation -> invocation.getArgument(0));
+        examService.findExamByName("Matematicas");
+
+        examService.enableWriteBehind(10, Duration.ofHours(1), 100);
+        Exam quimica = new Exam(4L, "Quimica");
+        examService.save(quimica);
+
+        // Sin flush previo: el lote se guarda al desactivar y su examen entra en el indice
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> examService.disableWriteBehind());
+        verify(examRepository).saveAll(List.of(quimica));
+        assertSame(quimica, examService.findExamByName("Quimica").orElseThrow());
+    }
+
+    @Test
+    void findExamByNameStreamStopsAtMatch() {
+        List<String> leidos = new ArrayList<>();
+        when(examRepository.streamAll()).then(invocation -> Data.DATA_EXAM.stream().peek(exam -> leidos.add(exam.getNombre())));
+        examService.setLookupMode(ExamServiceImpl.LookupMode.STREAM);
+
+        assertEquals(2L, examService.findExamByName("Historia").orElseThrow().getId());
+        // No sigue leyendo despues de encontrarlo
+        assertEquals(List.of("Matematicas", "Historia"), leidos);
+
+        leidos.clear();
+        Map<String, Exam> exams = examService.findExamsByNames(List.of("Historia", "Matematicas"));
+        assertEquals(List.of("Historia", "Matematicas"), List.copyOf(exams.keySet()));
+        assertEquals(List.of("Matematicas", "Historia"), leidos);
+
+        verify(examRepository, never()).findAll();
+    }
+
+    @Test
+    void findExamsWithQuestionsSingleRoundTrip() {
+        when(examRepository.findAll()).thenReturn(Data.DATA_EXAM);
+        when(questionRepository.findQuestionsByExamIds(anyCollection())).thenReturn(Map.of(1L, Data.QUESTIONS, 3L, List.of("rios")));
+
+        List<Exam> exams = examService.findExamsWithQuestions(List.of("Geografia", "Quimica", "Matematicas"));
+
+        assertEquals(2, exams.size());
+        assertEquals(List.of("rios"), exams.get(0).getPreguntas());
+        assertEquals(Data.QUESTIONS, exams.get(1).getPreguntas());
+        // Una sola llamada para todos los examenes, ninguna por examen
+        verify(questionRepository).findQuestionsByExamIds(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(1L, 3L))));
+        verify(questionRepository, never()).findQuestionByExamById(anyLong());
+    }
+
     @Test
     void findExamByNameEmptyList() {
         // Simulamos una lista vacía
@@ -0,0 +1,196 @@
+package org.ivan.appmockito.ejemplos.services;
+
+import org.ivan.appmockito.ejemplos.models.Exam;
+import org.ivan.appmockito.ejemplos.repositories.ExamRepository;
+import org.ivan.appmockito.ejemplos.repositories.QuestionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de WriteBehindExamWriter. Los lotes se comprueban con flush y, cuando hace falta que el
+ * hilo que escribe se quede parado, el repositorio simulado espera a un latch.
+ */
+@ExtendWith(MockitoExtension.class)
+class WriteBehindExamWriterTest {
+
+    @Mock
+    ExamRepository examRepository;
+
+    @Mock
+    QuestionRepository questionRepository;
+
+    WriteBehindExamWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IllegalStateException ignored) {
+                // Las pruebas de errores ya lo han comprobado
+            }
+        }
+    }
+
+    @Test
+    void testBatchesBySize() {
+        when(examRepository.saveAll(anyList())).then(invocation -> invocation.getArgument(0));
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 3, Duration.ofHours(1), 100);
+
+        for (long id = 1; id <= 7; id++) {
+            writer.submit(new Exam(id, "Examen " + id));
+        }
+        writer.flush();
+
+        // Dos lotes llenos y el resto al hacer flush
+        verify(examRepository, times(2)).saveAll(argThat(exams -> exams.size() == 3));
+        verify(examRepository, times(1)).saveAll(argThat(exams -> exams.size() == 1));
+        verifyNoInteractions(questionRepository);
+        assertEquals(0, writer.pending());
+    }
+
+    @Test
+    void testBatchesByTime() {
+        when(examRepository.saveAll(anyList())).then(invocation -> invocation.getArgument(0));
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 100, Duration.ofMillis(20), 100);
+
+        writer.submit(new Exam(1L, "Matematicas"));
+        writer.submit(new Exam(2L, "Historia"));
+
+        // Sin flush: el lote sale al pasar maxDelay aunque no este lleno
+        verify(examRepository, timeout(5000)).saveAll(argThat(exams -> exams.size() == 2));
+    }
+
+    @Test
+    void testSubmitWaitsWhenFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(examRepository.saveAll(anyList())).then(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 2, Duration.ofHours(1), 2);
+
+        writer.submit(new Exam(1L, "Matematicas"));
+        writer.submit(new Exam(2L, "Historia"));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        assertEquals(2, writer.pending());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> third = executor.submit(() -> writer.submit(new Exam(3L, "Geografia")));
+            // Mientras el lote no se guarda no hay sitio para el tercero
+            assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            third.get(10, TimeUnit.SECONDS);
+            writer.flush();
+            verify(examRepository, times(2)).saveAll(anyList());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFlushReportsFailure() {
+        when(examRepository.saveAll(anyList()))
+                .thenThrow(new IllegalStateException("backend caido"))
+                .then(invocation -> invocation.getArgument(0));
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 10, Duration.ofHours(1), 100);
+
+        writer.submit(new Exam(1L, "Matematicas"));
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> writer.flush());
+        assertEquals("backend caido", exception.getCause().getMessage());
+
+        // El error se informa una vez; lo siguiente se guarda con normalidad
+        writer.submit(new Exam(2L, "Historia"));
+        writer.flush();
+        verify(examRepository, times(2)).saveAll(anyList());
+
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.submit(new Exam(3L, "Geografia")));
+    }
+
+    @Test
+    void testQuestionsSavedInOneCall() {
+        when(examRepository.saveAll(anyList())).then(invocation -> invocation.getArgument(0));
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 10, Duration.ofHours(1), 100);
+
+        Exam matematicas = new Exam(1L, "Matematicas");
+        matematicas.setPreguntas(List.of("algebra"));
+        Exam historia = new Exam(2L, "Historia");
+        historia.setPreguntas(List.of("roma", "grecia"));
+        writer.submit(matematicas);
+        writer.submit(historia);
+        writer.flush();
+
+        verify(questionRepository).saveAllQuestions(List.of(List.of("algebra"), List.of("roma", "grecia")));
+        verify(questionRepository, never()).saveQuestions(anyList());
+    }
+
+    @Test
+    void testSubmitNullTakesNoSlot() {
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 10, Duration.ofHours(1), 1);
+
+        assertThrows(IllegalArgumentException.class, () -> writer.submit(null));
+        assertEquals(0, writer.pending());
+        verifyNoInteractions(examRepository);
+    }
+
+    @Test
+    void testSubmitRacingCloseIsSavedOrRejected() throws Exception {
+        AtomicInteger saved = new AtomicInteger();
+        when(examRepository.saveAll(anyList())).then(invocation -> {
+            List<Exam> exams = invocation.getArgument(0);
+            saved.addAndGet(exams.size());
+            return exams;
+        });
+        writer = new WriteBehindExamWriter(examRepository, questionRepository, 5, Duration.ofHours(1), 20);
+
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch submitting = new CountDownLatch(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                submitters.add(executor.submit(() -> {
+                    submitting.countDown();
+                    for (long id = 0; ; id++) {
+                        try {
+                            writer.submit(new Exam(id, "Examen " + id));
+                        } catch (IllegalStateException e) {
+                            return null;
+                        }
+                        accepted.incrementAndGet();
+                    }
+                }));
+            }
+            assertTrue(submitting.await(10, TimeUnit.SECONDS));
+
+            writer.close();
+            for (Future<?> submitter : submitters) {
+                submitter.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Todo lo aceptado se guardo antes de que close volviera y no queda ningun permiso ocupado
+        assertEquals(accepted.get(), saved.get());
+        assertEquals(0, writer.pending());
+        writer.flush();
+    }
+}